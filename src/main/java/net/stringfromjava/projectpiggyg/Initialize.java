@@ -10,12 +10,22 @@ import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.utils.ChunkingFilter;
 import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
+import net.stringfromjava.projectpiggyg.command.LogExportCache;
 import net.stringfromjava.projectpiggyg.command.misc.HelpCommandListener;
 import net.stringfromjava.projectpiggyg.command.obtain.message.ObtainDeletedMessagesCommandListener;
+import net.stringfromjava.projectpiggyg.command.obtain.message.ObtainEditHistoryCommandListener;
 import net.stringfromjava.projectpiggyg.command.obtain.message.ObtainTrollLogsCommandListener;
 import net.stringfromjava.projectpiggyg.command.obtain.voice.ObtainVoiceChannelActionLogsCommandListener;
 import net.stringfromjava.projectpiggyg.command.obtain.voice.ObtainVoiceChannelLogs;
 import net.stringfromjava.projectpiggyg.command.stupid.TrollCommandListener;
+import net.stringfromjava.projectpiggyg.data.cache.AttachmentDownloadService;
+import net.stringfromjava.projectpiggyg.data.cache.BackfillScheduler;
+import net.stringfromjava.projectpiggyg.data.cache.MessageEditHistory;
+import net.stringfromjava.projectpiggyg.data.cache.MessageSegmentStore;
+import net.stringfromjava.projectpiggyg.data.cache.RecentMessageCache;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
+import net.stringfromjava.projectpiggyg.data.log.LogJournal;
+import net.stringfromjava.projectpiggyg.data.log.PartitionedLogJournal;
 import net.stringfromjava.projectpiggyg.util.Constants;
 import net.stringfromjava.projectpiggyg.event.guild.JoinLeaveGuildEventListener;
 import net.stringfromjava.projectpiggyg.event.guild.MessageCacheGuildEventListener;
@@ -23,7 +33,6 @@ import net.stringfromjava.projectpiggyg.event.guild.VoiceChannelGuildEventListen
 import net.stringfromjava.projectpiggyg.util.app.AppUtil;
 import net.stringfromjava.projectpiggyg.util.app.LogType;
 import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
-import net.stringfromjava.projectpiggyg.util.data.FileUtil;
 import net.stringfromjava.projectpiggyg.util.data.PathUtil;
 import net.stringfromjava.projectpiggyg.util.discord.GuildUtil;
 import net.stringfromjava.projectpiggyg.util.discord.CommandUtil;
@@ -33,9 +42,12 @@ import net.stringfromjava.projectpiggyg.util.sys.SystemUtil;
 import org.fusesource.jansi.AnsiConsole;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.File;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The initialization of PiggyG. This is where
@@ -45,10 +57,19 @@ import java.util.*;
 public final class Initialize {
 
 	/**
-	 * Has PiggyG been fully initialized?
+	 * Has PiggyG been initialized enough to start taking commands? Some setup
+	 * tasks (such as caching messages) may still be running in the background.
 	 */
 	public static boolean initialized = false;
 
+	/**
+	 * Setup tasks that keep running in the background after PiggyG has started taking commands.
+	 */
+	private static final Map<String, CompletableFuture<Void>> backgroundTasks = new ConcurrentHashMap<>();
+	private static final ExecutorService backgroundExecutor = Executors.newThreadPerTaskExecutor(
+			Thread.ofVirtual().name("piggyg-setup-", 0).factory()
+	);
+
 	// Use "event.getJDA()" when you need to access the JDA instance in your event listeners
 	private static final JDA client = JDABuilder.createLight(Constants.Discord.PIGGYG_TOKEN, Constants.Discord.ALLOWED_GATEWAY_INTENTS)
 			.enableCache(CacheFlag.VOICE_STATE)
@@ -95,11 +116,19 @@ public final class Initialize {
 				logGitInfo();
 				logSystemInfo();
 				logVersionInfo();
-				removeOldLogFiles();
-				checkForMissingGuildFolders();
-				cacheGuildMessages();
 				registerEventListeners();
-				uploadCommands(); // This part of the setup should ALWAYS be the last!!
+				uploadCommands(); // This part of the setup should ALWAYS be the last one that isn't in the background!!
+				//
+				// Insert code that can take a while to finish here! These run in
+				// the background while PiggyG is already taking commands.
+				// ==========================================
+				CompletableFuture<Void> noDependency = CompletableFuture.completedFuture(null);
+				runInBackground("Remove old log files", Initialize::removeOldLogFiles, noDependency);
+				CompletableFuture<Void> guildFolders = runInBackground("Check for missing guild folders", Initialize::checkForMissingGuildFolders, noDependency);
+				CompletableFuture<Void> guildLogs = runInBackground("Recover guild logs", Initialize::recoverGuildLogs, guildFolders);
+				runInBackground("Cache guild messages", Initialize::cacheGuildMessages, guildLogs);
+				CompletableFuture.allOf(backgroundTasks.values().toArray(CompletableFuture[]::new))
+						.whenComplete((result, error) -> LoggerUtil.log("PiggyG's setup is now complete.", LogType.INFO, false));
 			}
 
 			@Override
@@ -110,6 +139,31 @@ public final class Initialize {
 		});
 	}
 
+	/**
+	 * Runs a setup task in the background once another task is done. If the
+	 * task fails, the error is logged and every task after it still runs.
+	 *
+	 * @param name  The name of the task, used for logging.
+	 * @param task  The task to run.
+	 * @param after The task that has to finish before this one starts.
+	 * @return A {@link java.util.concurrent.CompletableFuture} that completes once the task is done.
+	 */
+	private static CompletableFuture<Void> runInBackground(String name, Runnable task, CompletableFuture<Void> after) {
+		CompletableFuture<Void> backgroundTask = after.handle((result, error) -> null).thenRunAsync(() -> {
+			long startTime = System.nanoTime();
+			try {
+				task.run();
+				long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+				LoggerUtil.log(STR."Background setup task '\{name}' finished in \{millis}ms.", LogType.INFO, false);
+			} catch (RuntimeException e) {
+				LoggerUtil.error(STR."Background setup task '\{name}' failed, got this error: '\{e.getMessage()}'");
+				throw e;
+			}
+		}, backgroundExecutor);
+		backgroundTasks.put(name, backgroundTask);
+		return backgroundTask;
+	}
+
 	private static void setupProjectFilesAndFolders() {
 		PathUtil.createPath(PathUtil.ofAppData(), false);
 		PathUtil.createPath(PathUtil.ofAppData("logs"), false);
@@ -119,6 +173,14 @@ public final class Initialize {
 	private static void configureUtilities() {
 		LoggerUtil.configure();
 		AppUtil.configure();
+		LoggerUtil.configureFromConfig();
+		if (AppUtil.conditionalEnabled(Constants.Conditionals.ASYNC_LOGGING)) {
+			LoggerUtil.startAsyncLogging();
+		}
+		BackfillScheduler.configure();
+		AttachmentDownloadService.configure();
+		MessageEditHistory.configure();
+		LogExportCache.configure();
 	}
 
 	private static void configureHooks() {
@@ -129,11 +191,24 @@ public final class Initialize {
 			if (client != null) {
 				client.shutdown();
 			}
+			LogExportCache.clear();
+			LoggerUtil.log("Stopping message caching");
+			BackfillScheduler.shutdown();
+			AttachmentDownloadService.get().shutdown();
+			LoggerUtil.log("Closing guild logs");
+			GuildWriteAheadLog.closeAll();
+			PartitionedLogJournal.closeAll();
+			LogJournal.closeAll();
+			RecentMessageCache.Stats recentCacheStats = MessageSegmentStore.getRecentCacheStats();
+			LoggerUtil.log(STR."Recent message cache: \{recentCacheStats.hits()} hits, \{recentCacheStats.misses()} misses, \{recentCacheStats.evictions()} evictions (\{String.format("%.1f", recentCacheStats.hitRate())}% hit rate)");
+			LoggerUtil.log("Closing message caches");
+			MessageSegmentStore.closeAll();
 			LoggerUtil.log("Shutting down Jansi");
 			if (AnsiConsole.isInstalled()) {
 				AnsiConsole.systemUninstall();
 			}
 			LoggerUtil.log(Constants.Runtime.SESSION_TERMINATED_MESSAGE, LogType.INFO, false);
+			LoggerUtil.shutdown();
 			if (RuntimeUtil.isRunningFromJar()) {
 				new Scanner(System.in).nextLine();
 			}
@@ -187,29 +262,9 @@ public final class Initialize {
 	}
 
 	private static void removeOldLogFiles() {
-		File logsFolder = Paths.get(PathUtil.ofAppData("logs")).toFile();
-		// If the logs folder doesn't exist, then
-		// skip the operation to avoid null errors
-		if (!PathUtil.doesPathExist(logsFolder.getPath())) {
-			return;
-		}
-
-		List<File> logFiles = new ArrayList<>(Arrays.stream(logsFolder.listFiles()).sorted().toList());
-
-		// Sort from oldest to newest
-		Collections.reverse(logFiles);
-
-		// If the number of log files is over the set limit, then
-		// delete all old ones to save memory
-		int staleFilesFound = 0;
-		if (logFiles.size() > Constants.System.MAX_LOG_FILES_ALLOWED - 1) {
-			for (int i = Constants.System.MAX_LOG_FILES_ALLOWED - 1; i < logFiles.size(); i++) {
-				boolean deleted = FileUtil.deleteFile(logFiles.get(i).getPath());
-				if (deleted) {
-					staleFilesFound++;
-				}
-			}
-		}
+		// Older logs are compressed, and the oldest ones are deleted
+		// once they take up more space than the config allows
+		int staleFilesFound = LoggerUtil.archiveOldLogFiles();
 		LoggerUtil.log(STR."Deleted \{staleFilesFound} stale log file\{staleFilesFound != 1 ? "s" : ""}.", LogType.INFO, false);
 		displaySeparator();
 	}
@@ -217,8 +272,10 @@ public final class Initialize {
 	private static void checkForMissingGuildFolders() {
 		int missingGuildFoldersFound = 0;
 		for (Guild guild : client.getGuilds()) {
-			String guildFolder = PathUtil.fromGuildFolder(guild.getId());
-			if (!PathUtil.doesPathExist(guildFolder)) {
+			// Events can start writing logs before this check runs, so a
+			// guild's folder is only treated as missing if its config file is
+			String guildConfigFile = PathUtil.fromGuildFolder(guild.getId(), Constants.System.GUILD_CONFIG_FILE_NAME);
+			if (!PathUtil.doesPathExist(guildConfigFile)) {
 				LoggerUtil.log(
 						STR."Folder for guild '\{guild.getName()} (ID = \{guild.getId()}) is missing!",
 						LogType.WARN,
@@ -244,6 +301,16 @@ public final class Initialize {
 		displaySeparator();
 	}
 
+	private static void recoverGuildLogs() {
+		// Opening a guild's write-ahead log recovers any logs that were
+		// left behind by a crash and migrates any old log files
+		for (Guild guild : client.getGuilds()) {
+			GuildWriteAheadLog.of(guild.getId());
+		}
+		LoggerUtil.log("Recovered the logs of all guilds.", LogType.INFO, false);
+		displaySeparator();
+	}
+
 	private static void cacheGuildMessages() {
 		boolean msgLoggingAllowed = AppUtil.conditionalEnabled("MESSAGE_LOGGING_ALLOWED");
 		if (!msgLoggingAllowed) {
@@ -258,10 +325,12 @@ public final class Initialize {
 			return;
 		}
 
+		// Every guild (and every channel inside each guild) is cached at the same time
+		List<CompletableFuture<Void>> guildBackfills = new ArrayList<>();
 		for (Guild guild : client.getGuilds()) {
-			GuildUtil.cacheGuildMessages(guild);
-			displaySeparator(true);
+			guildBackfills.add(GuildUtil.cacheGuildMessages(guild));
 		}
+		CompletableFuture.allOf(guildBackfills.toArray(CompletableFuture[]::new)).join();
 		LoggerUtil.log("Finished caching messages for all guilds.", LogType.INFO, false);
 		displaySeparator();
 	}
@@ -301,12 +370,16 @@ public final class Initialize {
 				CommandUtil.createCommandData(
 						client,
 						new ObtainDeletedMessagesCommandListener("obtaindeletedmessages")
+				),
+				CommandUtil.createCommandData(
+						client,
+						new ObtainEditHistoryCommandListener("obtainedithistory")
 				)
 		).queue(
 				success -> {
 					LoggerUtil.log("All commands have been uploaded.", LogType.INFO, false);
 					displaySeparator();
-					LoggerUtil.log("PiggyG's setup is now complete.", LogType.INFO, false);
+					LoggerUtil.log("PiggyG is now taking commands! Anything else will finish setting up in the background.", LogType.INFO, false);
 					initialized = true;
 					displaySeparator();
 				}
@@ -10,6 +10,8 @@ import net.dv8tion.jda.api.utils.FileUpload;
 import net.stringfromjava.projectpiggyg.Initialize;
 import net.stringfromjava.projectpiggyg.data.command.CommandOptionData;
 import net.stringfromjava.projectpiggyg.util.app.AppUtil;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogContext;
 import net.stringfromjava.projectpiggyg.util.app.LogType;
 import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
 import net.stringfromjava.projectpiggyg.util.data.FileUtil;
@@ -27,6 +29,7 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Simple boilerplate class for new commands to extend to.
@@ -226,10 +229,20 @@ public abstract class CommandListener extends ListenerAdapter {
 
 			// Run the command :sparkles:
 			// (fucking finally lol)
+			long startTime = System.nanoTime();
 			onSlashCommandUsed(event);
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+			LogContext context = LogContext.EMPTY
+					.withGuild((guild != null) ? guild.getId() : null)
+					.withChannel(event.getChannel().getId())
+					.withCommand(name)
+					.withLatency(millis);
+			LoggerUtil.log(LogCategory.COMMANDS, LogType.DEBUG, context, () -> STR."Command '\{name}' finished in \{millis}ms");
 		} catch (Exception e) {
 			LoggerUtil.error(STR."Command '\{name}' failed to execute, got this error: '\{e.getMessage()}'");
 			StackTraceElement element = e.getStackTrace()[0];
+			// Make sure the error above is actually in the log file before it's sent
+			LoggerUtil.flush();
 			File currentLogFile = LoggerUtil.getLogFile();
 			File logsToSend = FileUtil.ensureFileExists(
 					PathUtil.ofAppData(
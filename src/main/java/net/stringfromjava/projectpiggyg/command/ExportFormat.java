@@ -0,0 +1,73 @@
+package net.stringfromjava.projectpiggyg.command;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The formats that the log files of the obtain commands can be sent in.
+ */
+public enum ExportFormat {
+	/**
+	 * Readable text, made with each command's {@code generateTextLog()}.
+	 */
+	TEXT(".txt"),
+	/**
+	 * The same readable text as {@link #TEXT}, but compressed with gzip, which fits
+	 * around ten times as many logs into each file.
+	 */
+	GZIP(".txt.gz"),
+	/**
+	 * The raw JSON of each log, one per line.
+	 */
+	NDJSON(".ndjson"),
+	/**
+	 * A spreadsheet with a column for each field of the logs.
+	 */
+	CSV(".csv");
+
+	private final String extension;
+
+	ExportFormat(String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * @return The extension of files in {@code this} format, including the dot.
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * @return The name of {@code this} format, as it's shown in the {@code format} option of commands.
+	 */
+	public String getOptionName() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Gets a format from its name in the {@code format} option of commands.
+	 *
+	 * @param optionName The name of the format.
+	 * @return The format, or {@link #TEXT} if there is no format with that name.
+	 */
+	@NotNull
+	public static ExportFormat fromOptionName(String optionName) {
+		for (ExportFormat format : values()) {
+			if (format.getOptionName().equalsIgnoreCase(optionName)) {
+				return format;
+			}
+		}
+		return TEXT;
+	}
+
+	/**
+	 * @return The name of every format, for the choices of the {@code format} option of commands.
+	 */
+	public static List<String> getOptionNames() {
+		return Arrays.stream(values()).map(ExportFormat::getOptionName).toList();
+	}
+}
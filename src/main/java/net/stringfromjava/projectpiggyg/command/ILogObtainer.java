@@ -2,6 +2,9 @@ package net.stringfromjava.projectpiggyg.command;
 
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Interface for commands that specifically get logs.
  */
@@ -14,4 +17,30 @@ public interface ILogObtainer {
 	 * @return A new {@code String} with all info in the way it was formatted inside the method.
 	 */
 	String generateTextLog(JSONObject info);
+
+	/**
+	 * Gets the columns of a CSV log file. Each column is the path to a field of the logs, where
+	 * each {@code .} goes one JSON object deeper (like {@code time.year}).
+	 * <p>
+	 * By default, this is every field of the first log (sorted by name), which can be
+	 * overridden to pick out only the fields that matter.
+	 *
+	 * @param firstLog The first log that will be in the file.
+	 * @return The columns of the file.
+	 */
+	default List<String> getCsvColumns(JSONObject firstLog) {
+		List<String> columns = new ArrayList<>();
+		addCsvColumns(firstLog, "", columns);
+		return columns;
+	}
+
+	private static void addCsvColumns(JSONObject object, String prefix, List<String> columns) {
+		for (String key : object.keySet().stream().sorted().toList()) {
+			if (object.opt(key) instanceof JSONObject child) {
+				addCsvColumns(child, STR."\{prefix}\{key}.", columns);
+			} else {
+				columns.add(prefix + key);
+			}
+		}
+	}
 }
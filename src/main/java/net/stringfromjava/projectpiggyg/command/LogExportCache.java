@@ -0,0 +1,226 @@
+package net.stringfromjava.projectpiggyg.command;
+
+import net.stringfromjava.projectpiggyg.command.LogObtainerCommandListener.GeneratedLogFile;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
+import net.stringfromjava.projectpiggyg.util.app.AppUtil;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogContext;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A cache of the log files that obtain commands have generated, so running the same command with
+ * the same options again (which moderators do a lot) sends the file that was already made instead
+ * of reading and writing every log again.
+ * <p>
+ * Each cached file remembers the version of its type of log from right before it was generated
+ * (see {@link GuildWriteAheadLog#getVersion(net.stringfromjava.projectpiggyg.data.log.GuildLogType)}),
+ * so once a log of that type is added, the file is out of date and gets generated again the next
+ * time it's asked for. The files stay on the disk, and once they take up more than the configured
+ * amount of bytes, the least recently used ones are deleted.
+ * <p>
+ * Files that were handed out to be sent aren't deleted until they're done being sent, even if
+ * they're pushed out of the cache before then.
+ */
+public final class LogExportCache {
+
+	/**
+	 * Everything that changes what a generated log file looks like, other than the logs themselves.
+	 */
+	record Key(String guildId, String command, LogQuery query, ExportFormat format, long maxPartBytes, int maxParts) {
+	}
+
+	private static final class Entry {
+
+		private final GeneratedLogFile logFile;
+		private final long version;
+		private final long weight;
+		// How many times the files are being sent right now
+		private int senders;
+		private boolean evicted;
+
+		private Entry(GeneratedLogFile logFile, long version, long weight) {
+			this.logFile = logFile;
+			this.version = version;
+			this.weight = weight;
+		}
+	}
+
+	// Every file takes up at least a block on the disk no matter how small it is,
+	// and an empty log file (which has no files) still takes up an entry
+	private static final long BLOCK_BYTES = 4096;
+
+	private static long maxBytes = 64L * 1024 * 1024;
+	// Kept in access order, so the first entry is always the least recently used one
+	private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	// Every entry with files, including evicted ones whose files are still being sent
+	private static final Map<List<File>, Entry> entriesByParts = new HashMap<>();
+	private static long bytes;
+
+	private LogExportCache() {
+	}
+
+	/**
+	 * Configures the cache from the {@code config.properties} file.
+	 * This must be called after {@link AppUtil#configure()}.
+	 */
+	public static void configure() {
+		maxBytes = Math.max(AppUtil.getConfigLong("export_cache_max_bytes", 64L * 1024 * 1024), 0);
+	}
+
+	/**
+	 * Deletes every cached log file (or, for files that are being sent right now, deletes
+	 * them once they're sent). This should be called once no more log files will be sent.
+	 */
+	public static synchronized void clear() {
+		entries.values().forEach(LogExportCache::evict);
+		entries.clear();
+	}
+
+	/**
+	 * Creates the key a log file is cached under.
+	 *
+	 * @param guildId      The ID of the guild the logs are from.
+	 * @param command      The name of the command that generated the file.
+	 * @param query        The query the logs were found with.
+	 * @param format       The format of the file.
+	 * @param maxPartBytes How big (in bytes) each part of the file can be.
+	 * @param maxParts     How many parts the file can be split into.
+	 * @return The key.
+	 */
+	@NotNull
+	static Key keyOf(String guildId, String command, @NotNull LogQuery query, ExportFormat format, long maxPartBytes, int maxParts) {
+		// Event types are matched no matter their case, so they're cached that way too
+		String eventType = query.eventType();
+		LogQuery normalized = (eventType != null) ? query.withEventType(eventType.toUpperCase(Locale.ROOT)) : query;
+		return new Key(guildId, command, normalized, format, maxPartBytes, maxParts);
+	}
+
+	/**
+	 * Looks up a cached log file. If one is found and it has files, then it has to
+	 * be given back with {@link #release(GeneratedLogFile)} once it's done being sent.
+	 *
+	 * @param key     The key of the log file.
+	 * @param version The current version of the type of log the file is made from.
+	 * @return The cached log file, or {@code null} if there isn't one for the current version.
+	 */
+	@Nullable
+	static synchronized GeneratedLogFile get(@NotNull Key key, long version) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.version != version) {
+			// Logs were added since, so it'll never be used again
+			entries.remove(key);
+			evict(entry);
+			return null;
+		}
+		if (!entry.logFile.parts().isEmpty()) {
+			entry.senders++;
+		}
+		LoggerUtil.log(
+				LogCategory.COMMANDS,
+				LogType.DEBUG,
+				LogContext.EMPTY.withGuild(key.guildId()).withCommand(key.command()),
+				() -> STR."Reusing a cached \{key.format()} log file (\{entry.logFile.logCount()} logs)"
+		);
+		return entry.logFile;
+	}
+
+	/**
+	 * Caches a log file that was just generated, replacing what was cached under the same key before.
+	 * If the log file has files, then it has to be given back with {@link #release(GeneratedLogFile)}
+	 * once it's done being sent.
+	 *
+	 * @param key     The key of the log file.
+	 * @param version The version of the type of log from before the file was generated.
+	 * @param logFile The log file.
+	 * @return The log file to send, which might not be the same one that was given.
+	 */
+	@NotNull
+	static synchronized GeneratedLogFile put(@NotNull Key key, long version, @NotNull GeneratedLogFile logFile) {
+		if (logFile.isEmpty()) {
+			// Nothing is ever sent for an empty log file, so its (empty) part isn't needed
+			logFile.parts().forEach(File::delete);
+			logFile = new GeneratedLogFile(List.of(), logFile.fileName(), logFile.format(), 0, logFile.leftOutLogs());
+		}
+		long weight = Math.max(logFile.parts().size(), 1) * BLOCK_BYTES;
+		for (File part : logFile.parts()) {
+			weight += part.length();
+		}
+		if (weight > maxBytes) {
+			// Too big to ever fit, so it's just deleted once it's sent
+			return logFile;
+		}
+
+		Entry old = entries.remove(key);
+		if (old != null) {
+			evict(old);
+		}
+		Entry entry = new Entry(logFile, version, weight);
+		entries.put(key, entry);
+		if (!logFile.parts().isEmpty()) {
+			entry.senders = 1;
+			entriesByParts.put(logFile.parts(), entry);
+		}
+		bytes += weight;
+		evictOverBudget();
+		return logFile;
+	}
+
+	/**
+	 * Gives back a log file once it's done being sent, so its files can be
+	 * deleted if they were pushed out of the cache while they were being sent.
+	 *
+	 * @param logFile The log file that was sent.
+	 * @return {@code false} if the log file isn't cached, meaning its files should be deleted.
+	 */
+	static synchronized boolean release(@NotNull GeneratedLogFile logFile) {
+		Entry entry = entriesByParts.get(logFile.parts());
+		if (entry == null) {
+			return false;
+		}
+		entry.senders--;
+		if (entry.evicted && entry.senders <= 0) {
+			deleteFiles(entry);
+		}
+		return true;
+	}
+
+	private static void evictOverBudget() {
+		Iterator<Entry> oldest = entries.values().iterator();
+		while (bytes > maxBytes && oldest.hasNext()) {
+			Entry entry = oldest.next();
+			oldest.remove();
+			evict(entry);
+		}
+	}
+
+	/**
+	 * Forgets an entry that was already removed from {@link #entries}, and
+	 * deletes its files right away unless they're being sent.
+	 */
+	private static void evict(Entry entry) {
+		entry.evicted = true;
+		bytes -= entry.weight;
+		if (entry.senders <= 0) {
+			deleteFiles(entry);
+		}
+	}
+
+	private static void deleteFiles(Entry entry) {
+		entriesByParts.remove(entry.logFile.parts());
+		entry.logFile.parts().forEach(File::delete);
+	}
+}
@@ -0,0 +1,255 @@
+package net.stringfromjava.projectpiggyg.command;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the logs of an obtain command into one or more files (parts), where each part is kept
+ * under a size limit that's known before anything is written, like the biggest file a guild
+ * can upload. Once a part is full, the next log goes into a new part, and once every part is
+ * full, no more logs are written. Only the log being written is ever kept in memory.
+ * <p>
+ * Gzip'd parts don't know how big they'll end up until they're finished, so the size of a part
+ * is estimated as if everything since the last flush doesn't compress at all. Only once that
+ * estimate says a log won't fit is the part flushed to find out its actual size, so parts
+ * are only flushed a handful of times each instead of after every log.
+ */
+final class LogExportWriter implements Closeable {
+
+	// Room for the gzip header and trailer, along with the end of the deflate stream
+	private static final int GZIP_OVERHEAD_BYTES = 64;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final ILogObtainer obtainer;
+	private final String fileName;
+	private final ExportFormat format;
+	private final long maxPartBytes;
+	private final int maxParts;
+	private final List<Path> parts = new ArrayList<>();
+	private List<String> csvColumns;
+	private OutputStream out;
+	private CountingOutputStream counter;
+	private long unflushedBytes;
+	private int partLogCount;
+	private int logCount;
+	private boolean full;
+	private boolean leftOutLogs;
+	private boolean finished;
+
+	/**
+	 * @param obtainer     The command that's obtaining the logs, which is what turns each log into text.
+	 * @param fileName     The name of the files, without their extension.
+	 * @param format       The format of the files.
+	 * @param maxPartBytes How big (in bytes) each part can be.
+	 * @param maxParts     How many parts can be written before the rest of the logs are left out.
+	 */
+	LogExportWriter(ILogObtainer obtainer, String fileName, ExportFormat format, long maxPartBytes, int maxParts) {
+		this.obtainer = obtainer;
+		this.fileName = fileName;
+		this.format = format;
+		this.maxPartBytes = maxPartBytes;
+		this.maxParts = Math.max(maxParts, 1);
+	}
+
+	/**
+	 * Writes a log into the current part, or into a new part if it doesn't fit.
+	 *
+	 * @param log The log to write.
+	 * @return {@code false} if every part is full, meaning no more logs can be written.
+	 * @throws IOException If the log couldn't be written.
+	 */
+	boolean write(JSONObject log) throws IOException {
+		if (full) {
+			return false;
+		}
+		if (format == ExportFormat.CSV && csvColumns == null) {
+			csvColumns = obtainer.getCsvColumns(log);
+		}
+		byte[] bytes = render(log);
+		if (out == null) {
+			openPart();
+		}
+		if (!fits(bytes.length)) {
+			if (partLogCount == 0) {
+				// Too big to ever fit in a part, so it has to be left out
+				leftOutLogs = true;
+				return true;
+			}
+			closePart();
+			if (parts.size() >= maxParts) {
+				full = true;
+				leftOutLogs = true;
+				return false;
+			}
+			openPart();
+			if (!fits(bytes.length)) {
+				leftOutLogs = true;
+				return true;
+			}
+		}
+		out.write(bytes);
+		unflushedBytes += bytes.length;
+		partLogCount++;
+		logCount++;
+		return true;
+	}
+
+	/**
+	 * Finishes the last part. {@code this} writer can't be used anymore after this.
+	 *
+	 * @return The parts that were written, which always has at least one (possibly empty) part.
+	 * @throws IOException If the last part couldn't be finished.
+	 */
+	LogObtainerCommandListener.GeneratedLogFile finish() throws IOException {
+		if (out == null && parts.isEmpty()) {
+			openPart();
+		}
+		closePart();
+		finished = true;
+		return new LogObtainerCommandListener.GeneratedLogFile(
+				parts.stream().map(Path::toFile).toList(),
+				fileName,
+				format,
+				logCount,
+				leftOutLogs
+		);
+	}
+
+	/**
+	 * Closes the current part, and deletes every part if {@link #finish()} was never called.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (finished) {
+			return;
+		}
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+		for (Path part : parts) {
+			Files.deleteIfExists(part);
+		}
+	}
+
+	private byte[] render(JSONObject log) {
+		String rendered = switch (format) {
+			case TEXT, GZIP -> obtainer.generateTextLog(log);
+			case NDJSON -> log.toString();
+			case CSV -> toCsvRow(csvColumns.stream().map(column -> getColumnValue(log, column)).toList());
+		};
+		return STR."\{rendered}\n".getBytes(StandardCharsets.UTF_8);
+	}
+
+	private boolean fits(int logBytes) throws IOException {
+		if (format != ExportFormat.GZIP) {
+			return counter.getCount() + logBytes <= maxPartBytes;
+		}
+		if (estimateGzipBytes(logBytes) <= maxPartBytes) {
+			return true;
+		}
+		// Find out how big the part actually is so far
+		out.flush();
+		unflushedBytes = 0;
+		return estimateGzipBytes(logBytes) <= maxPartBytes;
+	}
+
+	private long estimateGzipBytes(int logBytes) {
+		// Deflate never makes data more than a tiny bit bigger, even if it doesn't compress at all
+		long uncompressed = unflushedBytes + logBytes;
+		return counter.getCount() + uncompressed + uncompressed / 1024 + GZIP_OVERHEAD_BYTES;
+	}
+
+	private void openPart() throws IOException {
+		Path part = Files.createTempFile(STR."\{fileName}-", format.getExtension());
+		parts.add(part);
+		counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(part), BUFFER_SIZE));
+		out = (format == ExportFormat.GZIP) ? new GZIPOutputStream(counter, BUFFER_SIZE, true) : counter;
+		unflushedBytes = 0;
+		partLogCount = 0;
+		if (format == ExportFormat.CSV && csvColumns != null) {
+			// Every part gets a header, so each one can be opened on its own
+			out.write(STR."\{toCsvRow(csvColumns)}\n".getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void closePart() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	/**
+	 * Gets the value of a column, where each {@code .} in the column's name goes one JSON object deeper.
+	 */
+	private static String getColumnValue(JSONObject log, String column) {
+		Object value = log;
+		for (String key : column.split("\\.")) {
+			if (!(value instanceof JSONObject object)) {
+				return "";
+			}
+			value = object.opt(key);
+		}
+		if (value == null || value == JSONObject.NULL) {
+			return "";
+		}
+		return (value instanceof JSONArray array) ? array.join(";").replace("\"", "") : value.toString();
+	}
+
+	private static String toCsvRow(List<String> values) {
+		StringBuilder row = new StringBuilder();
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				row.append(',');
+			}
+			String value = values.get(i);
+			if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+				row.append('"').append(value.replace("\"", "\"\"")).append('"');
+			} else {
+				row.append(value);
+			}
+		}
+		return row.toString();
+	}
+
+	/**
+	 * Counts how many bytes go through it, which is how big the part it's writing to is.
+	 */
+	private static final class CountingOutputStream extends FilterOutputStream {
+
+		private long count;
+
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		private long getCount() {
+			return count;
+		}
+	}
+}
@@ -1,57 +1,207 @@
 package net.stringfromjava.projectpiggyg.command;
 
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.utils.FileUpload;
+import net.stringfromjava.projectpiggyg.data.command.CommandOptionData;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
+import net.stringfromjava.projectpiggyg.util.app.AppUtil;
 import net.stringfromjava.projectpiggyg.util.app.LogType;
 import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
-import net.stringfromjava.projectpiggyg.util.data.FileUtil;
+import net.stringfromjava.projectpiggyg.util.discord.CommandUtil;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * Abstract class for commands specifically for getting logs.
  */
 public abstract class LogObtainerCommandListener extends CommandListener implements ILogObtainer {
 
+	/**
+	 * A log file that was generated to be sent to the user, which might be split into
+	 * more than one part so each part fits in what the guild can upload.
+	 *
+	 * @param parts       The parts of the log file, in order.
+	 * @param fileName    The name of the log file, without its extension.
+	 * @param format      The format of the log file.
+	 * @param logCount    How many logs were written to the parts.
+	 * @param leftOutLogs If some logs were left out because they didn't fit in any part.
+	 */
+	public record GeneratedLogFile(List<File> parts, String fileName, ExportFormat format, int logCount, boolean leftOutLogs) {
+
+		/**
+		 * @return If no logs were written to the file.
+		 */
+		public boolean isEmpty() {
+			return logCount == 0;
+		}
+
+		/**
+		 * @param index The index of the part.
+		 * @return The name the part is uploaded with.
+		 */
+		public String getPartName(int index) {
+			String partSuffix = (parts.size() > 1) ? STR."-part-\{index + 1}" : "";
+			return fileName + partSuffix + format.getExtension();
+		}
+
+		@NotNull
+		public GeneratedLogFile withFileName(String fileName) {
+			return new GeneratedLogFile(parts, fileName, format, logCount, leftOutLogs);
+		}
+	}
+
+	/**
+	 * The option for picking the format of the log file, which every obtain command can add to its options.
+	 */
+	protected static final CommandOptionData FORMAT_OPTION = new CommandOptionData(
+			OptionType.STRING,
+			"format",
+			"The format of the log file. (Text by default)",
+			false,
+			ExportFormat.getOptionNames()
+	);
+
+	/**
+	 * The option for only getting the logs from the last few days, which every obtain command can add to its options.
+	 */
+	protected static final CommandOptionData DAYS_OPTION = new CommandOptionData(
+			OptionType.INTEGER,
+			"days",
+			"Only get the logs from this many days back. (All logs by default)",
+			false
+	);
+
 	public LogObtainerCommandListener(String name) {
 		super(name);
 		isGuildCommand = true; // Must always be a guild command
 	}
 
+	/**
+	 * Lazily streams every log of a guild that matches a query, only reading the logs from
+	 * the index that narrows the query down the most (if there is one). The stream should
+	 * be closed once it's done being used.
+	 *
+	 * @param guildId The ID of the guild to get the logs of.
+	 * @param query   The query the logs have to match.
+	 * @return A {@link java.util.stream.Stream} of every matching log, in the query's order.
+	 */
+	@NotNull
+	protected final Stream<JSONObject> query(String guildId, @NotNull LogQuery query) {
+		return LogQueryEngine.run(guildId, query);
+	}
+
+	/**
+	 * Narrows a query down to the logs from the last few days, if the user picked
+	 * how many days with the {@link #DAYS_OPTION}.
+	 *
+	 * @param query The query to narrow down.
+	 * @param event The event of the command, which the amount of days is taken from.
+	 * @return The narrowed down query, or the same query if no amount of days was picked.
+	 */
+	@NotNull
+	protected final LogQuery withDaysOption(@NotNull LogQuery query, @NotNull SlashCommandInteractionEvent event) {
+		OptionMapping daysOM = event.getOption(DAYS_OPTION.name());
+		if (daysOM == null || daysOM.getAsLong() <= 0) {
+			return query;
+		}
+		// Rounded down to the hour, so running the same command again a little
+		// later is the same query (which lets it use the cached log file)
+		long fromMillis = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(daysOM.getAsLong());
+		return query.withTimeRange(fromMillis - Math.floorMod(fromMillis, TimeUnit.HOURS.toMillis(1)), Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a temporary log file meant to be sent to the user when they trigger {@code this}
+	 * log command, in the format they picked with the {@link #FORMAT_OPTION}. Each part of the
+	 * file is kept under the biggest file the guild can upload.
+	 *
+	 * @param logs     A {@link java.util.stream.Stream} of the logs to write, in the order they should be in.
+	 * @param fileName The name of the new to-be-sent log file. (This DOES NOT include the extension.)
+	 * @param event    The event of the command, which the format and guild are taken from.
+	 * @return The new log file, or {@code null} if it failed to be created.
+	 */
+	@Nullable
+	protected final GeneratedLogFile generateLogFile(Stream<JSONObject> logs, String fileName, SlashCommandInteractionEvent event) {
+		return generateLogFile(logs, fileName, getFormat(event), getMaxPartBytes(event), getMaxParts());
+	}
+
+	/**
+	 * Runs a query and writes every log it finds into a log file, the same way as
+	 * {@link #generateLogFile(Stream, String, SlashCommandInteractionEvent)} does.
+	 * <p>
+	 * If {@code this} command already generated a log file for the same query (with the same options)
+	 * and no logs of the query's type were added since then, then that file is sent again without
+	 * reading any logs. Otherwise, the new log file is kept in the {@link LogExportCache} for next time.
+	 * <p>
+	 * NOTE: Since the log file might be cached, it must be sent with {@link #sendLogFile} unless it's empty.
+	 *
+	 * @param guildId  The ID of the guild to get the logs of.
+	 * @param query    The query the logs have to match.
+	 * @param fileName The name of the new to-be-sent log file. (This DOES NOT include the extension.)
+	 * @param event    The event of the command, which the format and guild are taken from.
+	 * @return The log file, or {@code null} if it failed to be created.
+	 */
+	@Nullable
+	protected final GeneratedLogFile generateLogFile(String guildId, @NotNull LogQuery query, String fileName, SlashCommandInteractionEvent event) {
+		ExportFormat format = getFormat(event);
+		long maxPartBytes = getMaxPartBytes(event);
+		int maxParts = getMaxParts();
+		LogExportCache.Key key = LogExportCache.keyOf(guildId, name, query, format, maxPartBytes, maxParts);
+		// Taken before any logs are read, so a log added while they're being read makes the file out of date
+		long version = GuildWriteAheadLog.of(guildId).getVersion(query.type());
+		GeneratedLogFile cached = LogExportCache.get(key, version);
+		if (cached != null) {
+			return cached.withFileName(fileName);
+		}
+
+		GeneratedLogFile generated;
+		try (Stream<JSONObject> logs = query(guildId, query)) {
+			generated = generateLogFile(logs, fileName, format, maxPartBytes, maxParts);
+		}
+		return (generated != null) ? LogExportCache.put(key, version, generated) : null;
+	}
+
 	/**
 	 * Creates a temporary log file meant to be sent to the user
 	 * when they trigger {@code this} log command.
 	 * <p>
-	 * NOTE: It is designed for you to override {@code generateTextLog()}, as that's how you will
-	 * handle what it looks like in the said log file.
+	 * Each log is turned into text and written to the file as soon as it's read from the stream,
+	 * so only one log is ever kept in memory at a time (instead of every log and all of their text),
+	 * no matter how many logs the guild has. Once a part of the file is as big as it can be, the
+	 * next log goes into a new part, and once there can't be any more parts, the rest of the stream
+	 * isn't even read.
 	 *
-	 * @param logs A {@link org.json.JSONArray} with all logs. Note that each log needs to
-	 *             be a {@link org.json.JSONObject}, anything else will simply be ignored.
-	 * @param fileName The name of the new to-be-sent log file. (This DOES NOT include the extension.)
-	 * @return The new log file. If it fails to create, then {@code null} is returned instead.
+	 * @param logs         A {@link java.util.stream.Stream} of the logs to write, in the order they should be in.
+	 * @param fileName     The name of the new to-be-sent log file. (This DOES NOT include the extension.)
+	 * @param format       The format of the log file.
+	 * @param maxPartBytes How big (in bytes) each part of the log file can be.
+	 * @param maxParts     How many parts the log file can be split into.
+	 * @return The new log file, or {@code null} if it failed to be created.
 	 */
 	@Nullable
-	protected final File generateLogFile(JSONArray logs, String fileName) {
-		// Create a temporary text file to send with the logs
-		try {
-			File toReturn = Files.createTempFile(fileName, ".txt").toFile();
-			StringBuilder fileInfo = new StringBuilder();
-
-			// Generate all logs into the temporary text file
-			for (Object info : logs) {
-				// Only allow JSON objects since that's what a log is anyway
-				if (!(info instanceof JSONObject infoJson)) {
-					continue;
+	protected final GeneratedLogFile generateLogFile(Stream<JSONObject> logs, String fileName, ExportFormat format, long maxPartBytes, int maxParts) {
+		try (LogExportWriter writer = new LogExportWriter(this, fileName, format, maxPartBytes, maxParts)) {
+			Iterator<JSONObject> iterator = logs.iterator();
+			while (iterator.hasNext()) {
+				if (!writer.write(iterator.next())) {
+					break;
 				}
-				fileInfo.append(STR."\{generateTextLog(infoJson)}\n");
 			}
-
-			FileUtil.writeToFile(toReturn, fileInfo.toString());
-			return toReturn;
-		} catch (IOException e) {
+			return writer.finish();
+		} catch (IOException | UncheckedIOException e) {
 			LoggerUtil.log(
 					STR."Failed to generate the needed log file, got this error: '\{e.getMessage()}'",
 					LogType.ERROR,
@@ -60,4 +210,59 @@ public abstract class LogObtainerCommandListener extends CommandListener impleme
 			return null;
 		}
 	}
+
+	/**
+	 * Sends every part of a log file as a reply, one part per message (since Discord's upload
+	 * limit is for a whole message), and deletes the parts once they've been sent (unless
+	 * they're kept in the {@link LogExportCache}).
+	 *
+	 * @param message The message to send with the first part.
+	 * @param event   The event of the command to reply to.
+	 * @param logFile The log file to send.
+	 */
+	protected final void sendLogFile(@Nullable String message, @NotNull SlashCommandInteractionEvent event, @NotNull GeneratedLogFile logFile) {
+		if (logFile.leftOutLogs()) {
+			String leftOutNote = "Heads up, there were too many logs to fit in the files I'm allowed to send, so some were left out! :warning:";
+			message = (message != null && !message.isEmpty()) ? STR."\{message}\n\{leftOutNote}" : leftOutNote;
+		}
+		sendLogFilePart(message, event, logFile, 0);
+	}
+
+	private void sendLogFilePart(@Nullable String message, SlashCommandInteractionEvent event, GeneratedLogFile logFile, int index) {
+		File part = logFile.parts().get(index);
+		CommandUtil.sendSafeReply(
+				message,
+				event,
+				List.of(FileUpload.fromData(part, logFile.getPartName(index))),
+				false,
+				() -> {
+					if (index + 1 < logFile.parts().size()) {
+						sendLogFilePart(null, event, logFile, index + 1);
+					} else {
+						finishSending(logFile);
+					}
+				},
+				() -> finishSending(logFile)
+		);
+	}
+
+	private static void finishSending(GeneratedLogFile logFile) {
+		if (!LogExportCache.release(logFile)) {
+			logFile.parts().forEach(File::delete);
+		}
+	}
+
+	private static ExportFormat getFormat(SlashCommandInteractionEvent event) {
+		OptionMapping formatOM = event.getOption(FORMAT_OPTION.name());
+		return (formatOM != null) ? ExportFormat.fromOptionName(formatOM.getAsString()) : ExportFormat.TEXT;
+	}
+
+	private static long getMaxPartBytes(SlashCommandInteractionEvent event) {
+		Guild guild = event.getGuild();
+		return (guild != null) ? guild.getMaxFileSize() : Message.MAX_FILE_SIZE;
+	}
+
+	private static int getMaxParts() {
+		return (int) AppUtil.getConfigLong("export_max_parts", 5);
+	}
 }
@@ -0,0 +1,114 @@
+package net.stringfromjava.projectpiggyg.command;
+
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
+import net.stringfromjava.projectpiggyg.data.log.TimeRange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A filter over the logs of a single type for a guild, which is run with
+ * {@link LogObtainerCommandListener#query(String, LogQuery)}.
+ * <p>
+ * Every field that's set has to match for a log to be found. What each field matches
+ * depends on the type of log:
+ * <ul>
+ *     <li>{@code userId}: Who sent the troll, who joined or left the voice channel, who
+ *     muted/deafened someone, or who sent the deleted message.</li>
+ *     <li>{@code targetUserId}: Who received the troll, or who got muted/deafened.</li>
+ *     <li>{@code channelId}: The voice channel that was joined or left, the voice channel someone
+ *     was muted/deafened in, or the channel a message was deleted in (deleted messages that were
+ *     logged before their channel was match every channel, since their channel isn't known).</li>
+ *     <li>{@code eventType}: {@code JOIN}, {@code LEAVE} or {@code MOVE} for voice channel logs, or the
+ *     {@link net.stringfromjava.projectpiggyg.event.guild.VoiceActionType} of a voice action log.</li>
+ * </ul>
+ * A log that doesn't have what a field is for (like the receiver of a voice channel log) never matches it.
+ *
+ * @param type         The type of log to look through.
+ * @param userId       The ID of the user who did what was logged.
+ * @param targetUserId The ID of the user it was done to.
+ * @param channelId    The ID of the channel it happened in.
+ * @param fromMillis   The earliest time (in epoch milliseconds) a log can be from, or {@link Long#MIN_VALUE}.
+ * @param toMillis     The time (in epoch milliseconds) every log has to be from before, or {@link Long#MAX_VALUE}.
+ * @param eventType    What kind of event was logged.
+ * @param limit        How many logs can be found at most, or {@link #NO_LIMIT}.
+ * @param order        Which order the logs are found in.
+ */
+public record LogQuery(
+		@NotNull GuildLogType type,
+		@Nullable String userId,
+		@Nullable String targetUserId,
+		@Nullable String channelId,
+		long fromMillis,
+		long toMillis,
+		@Nullable String eventType,
+		int limit,
+		@NotNull Order order
+) {
+
+	/**
+	 * The limit of a query that finds every matching log.
+	 */
+	public static final int NO_LIMIT = 0;
+
+	/**
+	 * The order logs are found in.
+	 */
+	public enum Order {
+		OLDEST_FIRST,
+		NEWEST_FIRST
+	}
+
+	/**
+	 * Creates a query that finds every log of a type, from oldest to newest.
+	 *
+	 * @param type The type of log to look through.
+	 * @return The new query.
+	 */
+	@NotNull
+	public static LogQuery of(@NotNull GuildLogType type) {
+		return new LogQuery(type, null, null, null, Long.MIN_VALUE, Long.MAX_VALUE, null, NO_LIMIT, Order.OLDEST_FIRST);
+	}
+
+	@NotNull
+	public LogQuery withUser(@Nullable String userId) {
+		return new LogQuery(type, userId, targetUserId, channelId, fromMillis, toMillis, eventType, limit, order);
+	}
+
+	@NotNull
+	public LogQuery withTargetUser(@Nullable String targetUserId) {
+		return new LogQuery(type, userId, targetUserId, channelId, fromMillis, toMillis, eventType, limit, order);
+	}
+
+	@NotNull
+	public LogQuery withChannel(@Nullable String channelId) {
+		return new LogQuery(type, userId, targetUserId, channelId, fromMillis, toMillis, eventType, limit, order);
+	}
+
+	@NotNull
+	public LogQuery withTimeRange(long fromMillis, long toMillis) {
+		return new LogQuery(type, userId, targetUserId, channelId, fromMillis, toMillis, eventType, limit, order);
+	}
+
+	@NotNull
+	public LogQuery withEventType(@Nullable String eventType) {
+		return new LogQuery(type, userId, targetUserId, channelId, fromMillis, toMillis, eventType, limit, order);
+	}
+
+	@NotNull
+	public LogQuery withLimit(int limit) {
+		return new LogQuery(type, userId, targetUserId, channelId, fromMillis, toMillis, eventType, limit, order);
+	}
+
+	@NotNull
+	public LogQuery withOrder(@NotNull Order order) {
+		return new LogQuery(type, userId, targetUserId, channelId, fromMillis, toMillis, eventType, limit, order);
+	}
+
+	/**
+	 * @return The range of time {@code this} query finds logs from.
+	 */
+	@NotNull
+	public TimeRange timeRange() {
+		return new TimeRange(fromMillis, toMillis);
+	}
+}
@@ -0,0 +1,213 @@
+package net.stringfromjava.projectpiggyg.command;
+
+import net.stringfromjava.projectpiggyg.data.log.GuildLogIndex;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
+import net.stringfromjava.projectpiggyg.data.log.TimeRange;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogContext;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs a {@link LogQuery} over the logs of a guild.
+ * <p>
+ * Before any log is read, every index over the query's type of log is checked for whether it can
+ * narrow down the query (such as the channel index when the query has a channel). Of those, the
+ * one with the fewest matching logs is used, so only those logs are ever read from the journal.
+ * Every other field of the query is then checked against each log that was read. If no index can
+ * help, then every log of the type is read instead.
+ * <p>
+ * If the query has a range of time, then every partition of the journal that doesn't have any
+ * logs from that range is skipped, whether an index is used or not.
+ * <p>
+ * A new {@link GuildLogIndex} has to be added to {@link #keysFor(GuildLogIndex, LogQuery)} (the
+ * compiler makes sure of that), and from then on, every query that it can help with uses it.
+ */
+final class LogQueryEngine {
+
+	// What voice channel logs have instead of a channel ID when no channel was joined or left
+	private static final String NO_VOICE_CHANNEL_PREFIX = "No voice channel";
+
+	/**
+	 * Lazily streams every log that matches a query.
+	 *
+	 * @param guildId The ID of the guild to look through the logs of.
+	 * @param query   The query to run.
+	 * @return A {@link java.util.stream.Stream} of every matching log, in the query's order.
+	 */
+	static Stream<JSONObject> run(String guildId, LogQuery query) {
+		GuildWriteAheadLog wal = GuildWriteAheadLog.of(guildId);
+		boolean newestFirst = query.order() == LogQuery.Order.NEWEST_FIRST;
+		TimeRange range = query.timeRange();
+
+		GuildLogIndex bestIndex = null;
+		long[] bestKeys = null;
+		int bestCount = Integer.MAX_VALUE;
+		for (GuildLogIndex index : GuildLogIndex.values()) {
+			if (index.getType() != query.type()) {
+				continue;
+			}
+			for (long[] keys : keysFor(index, query)) {
+				int count = wal.count(index, keys);
+				if (count < bestCount) {
+					bestIndex = index;
+					bestKeys = keys;
+					bestCount = count;
+				}
+			}
+		}
+
+		Stream<JSONObject> logs;
+		if (bestIndex != null) {
+			logs = newestFirst ? wal.lookupNewest(bestIndex, range, bestKeys) : wal.lookup(bestIndex, range, bestKeys);
+			logs = logs.filter(log -> matches(log, query));
+		} else if (newestFirst) {
+			logs = wal.streamNewest(query.type(), range, log -> matches(log, query));
+		} else {
+			logs = wal.stream(query.type(), range).filter(log -> matches(log, query));
+		}
+
+		GuildLogIndex usedIndex = bestIndex;
+		int candidates = bestCount;
+		LoggerUtil.log(
+				LogCategory.COMMANDS,
+				LogType.DEBUG,
+				LogContext.EMPTY.withGuild(guildId),
+				() -> (usedIndex != null)
+						? STR."Running a \{query.type()} log query with index \{usedIndex} (\{candidates} candidate log\{candidates != 1 ? "s" : ""})"
+						: STR."Running a \{query.type()} log query by reading every log"
+		);
+		return (query.limit() > 0) ? logs.limit(query.limit()) : logs;
+	}
+
+	/**
+	 * Gets every set of keys an index could look up to find every log that matches a query.
+	 *
+	 * @return The sets of keys, which is empty if the index can't narrow down the query.
+	 */
+	private static List<long[]> keysFor(GuildLogIndex index, LogQuery query) {
+		return switch (index) {
+			// The user index has both the affected and inflicting user,
+			// so it can narrow down a query for either one of them
+			case VOICE_ACTION_USER -> keySetsOf(parseId(query.userId()), parseId(query.targetUserId()));
+			case VOICE_ACTION_CHANNEL -> keySetsOf(parseId(query.channelId()));
+			case DELETED_MESSAGE_CHANNEL -> {
+				// Deleted messages with an unknown channel might be from the query's channel
+				Long channelKey = parseId(query.channelId());
+				yield (channelKey != null) ? List.of(new long[]{channelKey, GuildLogIndex.UNKNOWN_KEY}) : List.of();
+			}
+		};
+	}
+
+	private static boolean matches(JSONObject log, LogQuery query) {
+		GuildLogType type = query.type();
+		if (query.userId() != null && !query.userId().equals(idOf(userOf(log, type)))) {
+			return false;
+		}
+		if (query.targetUserId() != null && !query.targetUserId().equals(idOf(targetUserOf(log, type)))) {
+			return false;
+		}
+		if (query.channelId() != null && !matchesChannel(log, type, query.channelId())) {
+			return false;
+		}
+		if (query.eventType() != null && !query.eventType().equalsIgnoreCase(eventTypeOf(log, type))) {
+			return false;
+		}
+		// Logs from before times were saved with an epoch can't be placed in a range
+		return query.timeRange().contains(log);
+	}
+
+	private static JSONObject userOf(JSONObject log, GuildLogType type) {
+		return switch (type) {
+			case TROLL -> log.optJSONObject("author");
+			case VOICE -> log.optJSONObject("member");
+			case VOICE_ACTION -> log.optJSONObject("inflicter");
+			case DELETED_MESSAGE -> {
+				// Only deleted messages with a copy of the message know who sent it
+				JSONObject snapshot = log.optJSONObject("snapshot");
+				yield (snapshot != null) ? snapshot.optJSONObject("author") : null;
+			}
+		};
+	}
+
+	private static JSONObject targetUserOf(JSONObject log, GuildLogType type) {
+		return switch (type) {
+			case TROLL -> log.optJSONObject("receiver");
+			case VOICE_ACTION -> log.optJSONObject("affected");
+			case VOICE, DELETED_MESSAGE -> null;
+		};
+	}
+
+	private static boolean matchesChannel(JSONObject log, GuildLogType type, String channelId) {
+		return switch (type) {
+			case TROLL -> false;
+			case VOICE -> channelId.equals(idOf(log.optJSONObject("joined")))
+					|| channelId.equals(idOf(log.optJSONObject("left")));
+			case VOICE_ACTION -> channelId.equals(idOf(log.optJSONObject("channel")));
+			case DELETED_MESSAGE -> {
+				String loggedChannelId = idOf(log.optJSONObject("channel"));
+				yield loggedChannelId == null || channelId.equals(loggedChannelId);
+			}
+		};
+	}
+
+	private static String eventTypeOf(JSONObject log, GuildLogType type) {
+		return switch (type) {
+			case VOICE -> {
+				boolean joined = isVoiceChannel(log.optJSONObject("joined"));
+				boolean left = isVoiceChannel(log.optJSONObject("left"));
+				if (joined && left) {
+					yield "MOVE";
+				}
+				yield joined ? "JOIN" : (left ? "LEAVE" : null);
+			}
+			case VOICE_ACTION -> {
+				JSONObject action = log.optJSONObject("action");
+				yield (action != null) ? action.optString("type", null) : null;
+			}
+			case TROLL, DELETED_MESSAGE -> null;
+		};
+	}
+
+	private static boolean isVoiceChannel(JSONObject channel) {
+		String id = idOf(channel);
+		return id != null && !id.startsWith(NO_VOICE_CHANNEL_PREFIX);
+	}
+
+	private static String idOf(JSONObject nested) {
+		return (nested != null) ? nested.optString("id", null) : null;
+	}
+
+	private static Long parseId(String id) {
+		if (id == null) {
+			return null;
+		}
+		try {
+			return Long.parseLong(id);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return A set with just one key for each key that isn't {@code null}.
+	 */
+	private static List<long[]> keySetsOf(Long... keys) {
+		List<long[]> keySets = new ArrayList<>();
+		for (Long key : keys) {
+			if (key != null) {
+				keySets.add(new long[]{key});
+			}
+		}
+		return keySets;
+	}
+
+	private LogQueryEngine() {
+	}
+}
@@ -9,21 +9,25 @@ import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEve
 import net.dv8tion.jda.api.interactions.commands.DefaultMemberPermissions;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
-import net.dv8tion.jda.api.utils.FileUpload;
 import net.stringfromjava.projectpiggyg.command.LogObtainerCommandListener;
+import net.stringfromjava.projectpiggyg.command.LogQuery;
+import net.stringfromjava.projectpiggyg.data.cache.BackfillScheduler;
+import net.stringfromjava.projectpiggyg.data.cache.MessageSegmentStore;
 import net.stringfromjava.projectpiggyg.util.Constants;
 import net.stringfromjava.projectpiggyg.data.command.CommandOptionData;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogIndex;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
 import net.stringfromjava.projectpiggyg.util.data.JsonUtil;
-import net.stringfromjava.projectpiggyg.util.data.FileUtil;
-import net.stringfromjava.projectpiggyg.util.data.PathUtil;
 import net.stringfromjava.projectpiggyg.util.discord.CommandUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.File;
-import java.nio.file.Paths;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Command for getting deleted messages.
@@ -44,7 +48,8 @@ public class ObtainDeletedMessagesCommandListener extends LogObtainerCommandList
 				""";
 		options = List.of(
 				new CommandOptionData(OptionType.CHANNEL, "channel", "The channel to obtain logs from.", true),
-				new CommandOptionData(OptionType.INTEGER, "amount", "The amount of deleted messages to go back on. (0 = All the messages)", false)
+				new CommandOptionData(OptionType.INTEGER, "amount", "The amount of deleted messages to go back on. (0 = All the messages)", false),
+				FORMAT_OPTION
 		);
 		memberPermissions = DefaultMemberPermissions.enabledFor(Permission.MANAGE_SERVER);
 		requiredConditional = Constants.Conditionals.MESSAGE_LOGGING_ALLOWED;
@@ -63,28 +68,24 @@ public class ObtainDeletedMessagesCommandListener extends LogObtainerCommandList
 					"Brother, you need to put in a channel where you can __*SEND MESSAGES*__, not whatever bullshit you tried to feed me :sob::pray:",
 					event
 			);
+			return;
 		}
 
 		OptionMapping amountOM = event.getOption("amount");
 		Guild guild = event.getGuild();
-		File deletedMessageIdsFile = FileUtil.ensureFileExists(
-				PathUtil.fromGuildLogs(
-						guild.getId(),
-						Constants.System.DELETED_MESSAGE_LOG_FILE_NAME
-				),
-				"[]"
-		);
-		JSONArray deletedMessageIds = new JSONArray(FileUtil.getFileData(deletedMessageIdsFile));
-		JSONArray obtained = new JSONArray();
+		// Deleted messages that were logged before their channel was
+		// are kept under an unknown channel, so those are checked too
+		int deletedCount = GuildWriteAheadLog.of(guild.getId())
+				.count(GuildLogIndex.DELETED_MESSAGE_CHANNEL, channel.getIdLong(), GuildLogIndex.UNKNOWN_KEY);
 
 		if (amountOM != null) {
 			amount = amountOM.getAsInt();
 		}
 		if (amount == 0) {
-			amount = deletedMessageIds.length();
+			amount = deletedCount;
 		}
 
-		if (amount < 0 || amount > deletedMessageIds.length()) {
+		if (amount < 0 || amount > deletedCount) {
 			CommandUtil.sendSafeReply(
 					"Bruh, you can't go back that far in the history :man_facepalming:",
 					event
@@ -92,34 +93,30 @@ public class ObtainDeletedMessagesCommandListener extends LogObtainerCommandList
 			return;
 		}
 
-		for (int i = deletedMessageIds.length() - 1; i >= 0 && obtained.length() < amount; i--) {
-			String currentId = deletedMessageIds.getString(i);
-			String messagePath = PathUtil.fromGuildBlobCache(guild.getId(),
-					Constants.System.GUILD_BLOB_CACHE_CHANNELS_FOLDER_NAME,
-					channel.getId(),
-					Constants.System.GUILD_BLOB_CACHE_MESSAGES_FOLDER_NAME,
-					currentId
-			);
-
-			if (Paths.get(messagePath).toFile().exists()) {
-				File messageJsonFile = FileUtil.ensureFileExists(
-						PathUtil.fromGuildBlobCache(guild.getId(),
-								Constants.System.GUILD_BLOB_CACHE_CHANNELS_FOLDER_NAME,
-								channel.getId(),
-								Constants.System.GUILD_BLOB_CACHE_MESSAGES_FOLDER_NAME,
-								currentId,
-								"message.json"
-						),
-						"{}"
-				);
-				obtained.put(new JSONObject(FileUtil.getFileData(messageJsonFile)));
-			}
+		// Each deleted message is written to the log file as soon as it's found
+		GeneratedLogFile toSend;
+		LogQuery query = LogQuery.of(GuildLogType.DELETED_MESSAGE)
+				.withChannel(channel.getId())
+				.withOrder(LogQuery.Order.NEWEST_FIRST);
+		try (Stream<JSONObject> deletedMessages = query(guild.getId(), query)) {
+			Stream<JSONObject> obtained = deletedMessages
+					.map(deletedMessage -> findDeletedMessage(deletedMessage, guild.getId()))
+					.filter(Objects::nonNull)
+					.limit(amount);
+			toSend = generateLogFile(obtained, "deleted-messages", event);
 		}
 
-		File toSend = generateLogFile(obtained, "deleted-messages");
-
-		if (!obtained.isEmpty()) {
-			CommandUtil.sendSafeReply(null, event, List.of(FileUpload.fromData(toSend)));
+		// Messages sent while PiggyG was offline might not be cached yet
+		String stillCachingNote = BackfillScheduler.isBackfilling(guild.getId())
+				? "Heads up, I'm still catching up on this server's message history, so some deleted messages might be missing! :hourglass_flowing_sand:"
+				: null;
+
+		if (toSend == null) {
+			CommandUtil.sendSafeReply("Sorry bruv, but I couldn't get the deleted messages... :pensive:", event);
+		} else if (!toSend.isEmpty()) {
+			sendLogFile(stillCachingNote, event, toSend);
+		} else if (stillCachingNote != null) {
+			CommandUtil.sendSafeReply(stillCachingNote, event);
 		} else {
 			CommandUtil.sendSafeReply("Hmmm, seems like no one deleted any messages yet...", event);
 		}
@@ -171,4 +168,28 @@ public class ObtainDeletedMessagesCommandListener extends LogObtainerCommandList
 
 		return sb.toString();
 	}
+
+	/**
+	 * Finds the contents of a deleted message from its deleted message log.
+	 *
+	 * @return The deleted message, or {@code null} if it was never cached.
+	 */
+	@Nullable
+	private JSONObject findDeletedMessage(JSONObject deletedMessage, String guildId) {
+		// Newer logs have a copy of the message from when it got deleted
+		JSONObject snapshot = deletedMessage.optJSONObject("snapshot");
+		if (snapshot != null) {
+			return snapshot;
+		}
+
+		long messageId;
+		try {
+			messageId = Long.parseLong(JsonUtil.getJsonField(deletedMessage, "id", ""));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		// Only messages cached in the requested channel will be found
+		return MessageSegmentStore.getIfCached(guildId, channel.getId(), messageId);
+	}
 }
@@ -0,0 +1,126 @@
+package net.stringfromjava.projectpiggyg.command.obtain.message;
+
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.Channel;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.DefaultMemberPermissions;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.stringfromjava.projectpiggyg.command.LogObtainerCommandListener;
+import net.stringfromjava.projectpiggyg.data.cache.MessageEditHistory;
+import net.stringfromjava.projectpiggyg.data.cache.MessageSegmentStore;
+import net.stringfromjava.projectpiggyg.data.command.CommandOptionData;
+import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.util.data.JsonUtil;
+import net.stringfromjava.projectpiggyg.util.discord.CommandUtil;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Command for getting every revision of an edited message.
+ */
+public class ObtainEditHistoryCommandListener extends LogObtainerCommandListener {
+
+	public ObtainEditHistoryCommandListener(String name) {
+		super(name);
+		description = "Get every edit that was made to a message.";
+		helpDescription = """
+				Get what a message looked like before and after every time
+				it was edited. You need to put in the channel the message was sent in
+				and the message's ID. Only people with the "Manage server" permission can
+				use this command.
+				""";
+		options = List.of(
+				new CommandOptionData(OptionType.CHANNEL, "channel", "The channel the message was sent in.", true),
+				new CommandOptionData(OptionType.STRING, "message_id", "The ID of the message.", true),
+				FORMAT_OPTION
+		);
+		memberPermissions = DefaultMemberPermissions.enabledFor(Permission.MANAGE_SERVER);
+		requiredConditional = Constants.Conditionals.MESSAGE_LOGGING_ALLOWED;
+	}
+
+	@Override
+	protected void onSlashCommandUsed(@NotNull SlashCommandInteractionEvent event) {
+		Guild guild = event.getGuild();
+		Channel channel = event.getOption("channel").getAsChannel();
+
+		if (!(channel instanceof GuildMessageChannel)) {
+			CommandUtil.sendSafeReply(
+					"Brother, you need to put in a channel where you can __*SEND MESSAGES*__, not whatever bullshit you tried to feed me :sob::pray:",
+					event
+			);
+			return;
+		}
+
+		long messageId;
+		try {
+			messageId = Long.parseLong(event.getOption("message_id").getAsString().trim());
+		} catch (NumberFormatException e) {
+			CommandUtil.sendSafeReply("Bruh, that's not a message ID :man_facepalming:", event);
+			return;
+		}
+
+		JSONObject cached = MessageSegmentStore.getIfCached(guild.getId(), channel.getId(), messageId);
+		if (cached == null) {
+			CommandUtil.sendSafeReply("Hmm, I don't have that message cached in that channel...", event);
+			return;
+		}
+
+		List<MessageEditHistory.Revision> revisions = MessageEditHistory.getRevisions(cached);
+		if (revisions.size() == 1) {
+			CommandUtil.sendSafeReply("That message was never edited, bro", event);
+			return;
+		}
+
+		Stream<JSONObject> revisionLogs = revisions.stream()
+				.map(revision -> new JSONObject()
+						.put("revision", revision.number())
+						.put("contents", revision.contents())
+						.put("time", revision.time()));
+		GeneratedLogFile toSend = generateLogFile(revisionLogs, "edit-history", event);
+		if (toSend != null) {
+			int droppedEdits = cached.optInt("dropped-edits", 0);
+			sendLogFile(
+					(droppedEdits > 0) ? STR."Heads up, this message was edited so much that the first \{droppedEdits} edits were forgotten!" : null,
+					event,
+					toSend
+			);
+		} else {
+			CommandUtil.sendSafeReply("Sorry bruv, but I couldn't get the edit history... :pensive:", event);
+		}
+	}
+
+	@Override
+	public String generateTextLog(JSONObject info) {
+		StringBuilder sb = new StringBuilder();
+		JSONObject timeEdited = JsonUtil.getJsonField(info, "time", new JSONObject());
+
+		// Get all necessary attributes of the log
+		int revision = JsonUtil.getJsonField(info, "revision", 0);
+		String contents = JsonUtil.getJsonField(info, "contents", "");
+		String year = JsonUtil.getJsonField(timeEdited, "year", "Unknown");
+		String month = JsonUtil.getJsonField(timeEdited, "month", "Unknown");
+		String day = JsonUtil.getJsonField(timeEdited, "day", "Unknown");
+		String hour = JsonUtil.getJsonField(timeEdited, "hour", "Unknown");
+		String minute = JsonUtil.getJsonField(timeEdited, "minute", "Unknown");
+		String second = JsonUtil.getJsonField(timeEdited, "second", "Unknown");
+
+		// Combine all info
+		sb.append("-------------------------------------------------------------\n");
+		if (timeEdited.isEmpty()) {
+			sb.append(STR."[REVISION \{revision}] (Oldest known contents)\n");
+		} else {
+			sb.append(STR."[REVISION \{revision}]\n");
+			sb.append(STR."[DATE EDITED] \{month}/\{day}/\{year}\n");
+			sb.append(STR."[TIME EDITED] \{hour}:\{minute}:\{second}\n");
+		}
+		sb.append(STR."[MESSAGE] \"\{contents}\"\n");
+		sb.append("-------------------------------------------------------------\n");
+
+		return sb.toString();
+	}
+}
@@ -7,22 +7,16 @@ import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEve
 import net.dv8tion.jda.api.interactions.commands.DefaultMemberPermissions;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
-import net.dv8tion.jda.api.utils.FileUpload;
 import net.stringfromjava.projectpiggyg.command.ILogObtainer;
 import net.stringfromjava.projectpiggyg.command.LogObtainerCommandListener;
-import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.command.LogQuery;
 import net.stringfromjava.projectpiggyg.data.command.CommandOptionData;
-import net.stringfromjava.projectpiggyg.util.app.LogType;
-import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
 import net.stringfromjava.projectpiggyg.util.data.JsonUtil;
-import net.stringfromjava.projectpiggyg.util.data.FileUtil;
-import net.stringfromjava.projectpiggyg.util.data.PathUtil;
 import net.stringfromjava.projectpiggyg.util.discord.CommandUtil;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -34,7 +28,7 @@ public class ObtainTrollLogsCommandListener extends LogObtainerCommandListener i
 		super(name);
 		description = "Obtain all logs of the different troll messages sent.";
 		helpDescription = """
-				Sends a `.txt` file with every troll command sent.
+				Sends a file (`.txt` by default) with every troll command sent.
 				This includes helpful info such as what time it was sent,
 				what time zone it was sent from, the author's/receiver's username
 				and ID, and much more. Only users with the "Manage server"
@@ -42,7 +36,9 @@ public class ObtainTrollLogsCommandListener extends LogObtainerCommandListener i
 				""";
 		memberPermissions = DefaultMemberPermissions.enabledFor(Permission.MANAGE_SERVER);
 		options = List.of(
-				new CommandOptionData(OptionType.USER, "from_user", "An optional user to filter the logs.", false)
+				new CommandOptionData(OptionType.USER, "from_user", "An optional user to filter the logs.", false),
+				DAYS_OPTION,
+				FORMAT_OPTION
 		);
 		memberPermissions = DefaultMemberPermissions.enabledFor(Permission.MANAGE_SERVER);
 	}
@@ -57,17 +53,6 @@ public class ObtainTrollLogsCommandListener extends LogObtainerCommandListener i
 			fromUser = fromUserOM.getAsUser();
 		}
 
-		File trollLogsFile = FileUtil.ensureFileExists(
-				PathUtil.fromGuildLogs(guild.getId(), Constants.System.TROLL_LOG_FILE_NAME),
-				"[]"
-		);
-		JSONArray trollLogs = new JSONArray(FileUtil.getFileData(trollLogsFile));
-
-		if (trollLogs.isEmpty()) {
-			CommandUtil.sendSafeReply("Hmm, seems like no one has sent any trolls yet...", event);
-			return;
-		}
-
 		if (fromUser != null && fromUser.isBot()) {
 			CommandUtil.sendSafeReply(
 					"Bro...\n***STOP FUCKING USING COMMANDS ON BOTS, YOU CAN'T MESS WITH MY HOME BOYS LIKE THAT*** :rage:",
@@ -76,43 +61,18 @@ public class ObtainTrollLogsCommandListener extends LogObtainerCommandListener i
 			return;
 		}
 
-		// Filter the logs if a user was provided
-		JSONArray filteredLogs = new JSONArray();
-		for (Object id : trollLogs) {
-			if (!(id instanceof String l)) {
-				LoggerUtil.log(
-						STR."Found a corrupted troll log ID inside the troll logs file for guild ID \{guild.getId()}. Skipping...",
-						LogType.WARN
-				);
-				continue;
-			}
-			File trollFile = FileUtil.ensureFileExists(
-					PathUtil.fromGuildBlobCache(guild.getId(),
-							Constants.System.GUILD_BLOB_CACHE_TROLLS_FOLDER_NAME,
-							l,
-							Constants.System.GUILD_BLOB_CACHE_TROLL_INFO_FILE_NAME
-					),
-					"{}"
-			);
-			JSONObject logInfo = new JSONObject(FileUtil.getFileData(trollFile));
-			JSONObject author = JsonUtil.getJsonField(logInfo, "author", new JSONObject());
-			String senderId = JsonUtil.getJsonField(author, "id", "Unknown");
-
-			if (fromUser == null || senderId.equals(fromUser.getId())) {
-				filteredLogs.put(logInfo);
-			}
-		}
+		// Filter the logs if a user was provided, writing them
+		// straight into a temporary text file to send with the logs
+		LogQuery query = withDaysOption(LogQuery.of(GuildLogType.TROLL), event)
+				.withUser((fromUser != null) ? fromUser.getId() : null);
+		GeneratedLogFile logFile = generateLogFile(guild.getId(), query, "troll-logs", event);
 
-		// Create a temporary text file to send with the logs
-		File logFile = generateLogFile(filteredLogs, "troll-logs");
-		if (logFile != null) {
-			CommandUtil.sendSafeReply(
-					"",
-					event,
-					List.of(FileUpload.fromData(logFile, logFile.getName()))
-			);
-		} else {
+		if (logFile == null) {
 			CommandUtil.sendSafeReply("Sorry bruv, but I couldn't get the troll logs... :pensive:", event);
+		} else if (logFile.isEmpty()) {
+			CommandUtil.sendSafeReply("Hmm, seems like no one has sent any trolls yet...", event);
+		} else {
+			sendLogFile(null, event, logFile);
 		}
 	}
 
@@ -10,19 +10,15 @@ import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEve
 import net.dv8tion.jda.api.interactions.commands.DefaultMemberPermissions;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
-import net.dv8tion.jda.api.utils.FileUpload;
 import net.stringfromjava.projectpiggyg.command.LogObtainerCommandListener;
-import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.command.LogQuery;
 import net.stringfromjava.projectpiggyg.data.command.CommandOptionData;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
 import net.stringfromjava.projectpiggyg.util.data.JsonUtil;
-import net.stringfromjava.projectpiggyg.util.data.FileUtil;
-import net.stringfromjava.projectpiggyg.util.data.PathUtil;
 import net.stringfromjava.projectpiggyg.util.discord.CommandUtil;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -41,7 +37,9 @@ public class ObtainVoiceChannelActionLogsCommandListener extends LogObtainerComm
 		options = List.of(
 				new CommandOptionData(OptionType.USER, "affected_user", "An optional affected user that was muted/deafened to obtain specific logs from.", false),
 				new CommandOptionData(OptionType.USER, "from_user", "An optional inflicting user that muted/deafened another user to obtain specific logs from.", false),
-				new CommandOptionData(OptionType.CHANNEL, "voice_channel", "An optional voice channel to obtain specific logs from.", false)
+				new CommandOptionData(OptionType.CHANNEL, "voice_channel", "An optional voice channel to obtain specific logs from.", false),
+				DAYS_OPTION,
+				FORMAT_OPTION
 		);
 		memberPermissions = DefaultMemberPermissions.enabledFor(Permission.MANAGE_SERVER);
 	}
@@ -72,52 +70,15 @@ public class ObtainVoiceChannelActionLogsCommandListener extends LogObtainerComm
 			}
 		}
 
-		File voiceActionLogsFile = FileUtil.ensureFileExists(
-				PathUtil.fromGuildLogs(
-						guild.getId(),
-						Constants.System.VOICE_ACTION_LOG_FILE_NAME
-				),
-				"[]"
-		);
-		JSONArray voiceActionLogs = new JSONArray(FileUtil.getFileData(voiceActionLogsFile));
-		// Filter logs based on provided options
-		JSONArray filteredLogs = new JSONArray();
-		for (int i = 0; i < voiceActionLogs.length(); i++) {
-			JSONObject log = voiceActionLogs.getJSONObject(i);
-
-			boolean matches = true;
-			if (affectedUser != null) {
-				String affectedId = JsonUtil.getJsonField(log, "affected-id", "");
-				if (!affectedUser.getId().equals(affectedId)) {
-					matches = false;
-				}
-			}
-			if (fromUser != null) {
-				String inflicterId = JsonUtil.getJsonField(log, "inflicter-id", "");
-				if (!fromUser.getId().equals(inflicterId)) {
-					matches = false;
-				}
-			}
-			if (voiceChannel != null) {
-				String channelId = JsonUtil.getJsonField(log, "channel-id", "");
-				if (!voiceChannel.getId().equals(channelId)) {
-					matches = false;
-				}
-			}
+		// Only the logs from whichever index has the fewest matches are read
+		LogQuery query = withDaysOption(LogQuery.of(GuildLogType.VOICE_ACTION), event)
+				.withUser((fromUser != null) ? fromUser.getId() : null)
+				.withTargetUser((affectedUser != null) ? affectedUser.getId() : null)
+				.withChannel((voiceChannel != null) ? voiceChannel.getId() : null);
+		GeneratedLogFile logsFile = generateLogFile(guild.getId(), query, "voice-action-logs", event);
 
-			if (matches) {
-				filteredLogs.put(log);
-			}
-		}
-
-		File logsFile = generateLogFile(filteredLogs, "voice-action-logs");
-
-		if (logsFile != null && !filteredLogs.isEmpty()) {
-			CommandUtil.sendSafeReply(
-					null,
-					event,
-					List.of(FileUpload.fromData(logsFile))
-			);
+		if (logsFile != null && !logsFile.isEmpty()) {
+			sendLogFile(null, event, logsFile);
 		} else {
 			CommandUtil.sendSafeReply(
 					"Sorry bro, but there ain't no one who muted/deafened anyone yet...",
@@ -1,19 +1,30 @@
 package net.stringfromjava.projectpiggyg.command.obtain.voice;
 
 import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.entities.channel.concrete.VoiceChannel;
+import net.dv8tion.jda.api.entities.channel.unions.GuildChannelUnion;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.interactions.commands.DefaultMemberPermissions;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
-import net.stringfromjava.projectpiggyg.command.CommandListener;
+import net.stringfromjava.projectpiggyg.command.LogObtainerCommandListener;
+import net.stringfromjava.projectpiggyg.command.LogQuery;
 import net.stringfromjava.projectpiggyg.data.command.CommandOptionData;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
+import net.stringfromjava.projectpiggyg.util.data.JsonUtil;
+import net.stringfromjava.projectpiggyg.util.discord.CommandUtil;
 import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
 
 import java.util.List;
 
 /**
  * Command for getting voice channel logs.
  */
-public class ObtainVoiceChannelLogs extends CommandListener {
+public class ObtainVoiceChannelLogs extends LogObtainerCommandListener {
 
 	public ObtainVoiceChannelLogs(String name) {
 		super(name);
@@ -26,13 +37,83 @@ public class ObtainVoiceChannelLogs extends CommandListener {
 				""";
 		options = List.of(
 				new CommandOptionData(OptionType.USER, "user", "An optional user to obtain specific logs from.", false),
-				new CommandOptionData(OptionType.CHANNEL, "voice_channel", "An optional voice channel to obtain specific logs from.", false)
+				new CommandOptionData(OptionType.CHANNEL, "voice_channel", "An optional voice channel to obtain specific logs from.", false),
+				DAYS_OPTION,
+				FORMAT_OPTION
 		);
 		memberPermissions = DefaultMemberPermissions.enabledFor(Permission.MANAGE_SERVER);
 	}
 
 	@Override
 	protected void onSlashCommandUsed(@NotNull SlashCommandInteractionEvent event) {
-		// TODO: Work on this later lol
+		Guild guild = event.getGuild();
+		User user = null;
+		VoiceChannel voiceChannel = null;
+		OptionMapping userOM = event.getOption("user");
+		OptionMapping voiceChannelOM = event.getOption("voice_channel");
+
+		if (userOM != null) {
+			user = userOM.getAsUser();
+		}
+		if (voiceChannelOM != null) {
+			GuildChannelUnion gcu = voiceChannelOM.getAsChannel();
+			if (gcu.getType() == ChannelType.VOICE) {
+				voiceChannel = gcu.asVoiceChannel();
+			} else {
+				CommandUtil.sendSafeReply("Brother, do you not know what \"VC\" stands for? :sob:\nYou need to put in a voice channel", event);
+				return;
+			}
+		}
+
+		// Stream the logs out of the journal and straight into the log
+		// file, so only the log being written is ever kept around
+		LogQuery query = withDaysOption(LogQuery.of(GuildLogType.VOICE), event)
+				.withUser((user != null) ? user.getId() : null)
+				.withChannel((voiceChannel != null) ? voiceChannel.getId() : null);
+		GeneratedLogFile logsFile = generateLogFile(guild.getId(), query, "voice-channel-logs", event);
+
+		if (logsFile == null) {
+			CommandUtil.sendSafeReply("Sorry bruv, but I couldn't get the voice channel logs... :pensive:", event);
+		} else if (logsFile.isEmpty()) {
+			CommandUtil.sendSafeReply("Hmm, seems like no one has joined or left any voice channels yet...", event);
+		} else {
+			sendLogFile(null, event, logsFile);
+		}
+	}
+
+	@Override
+	public String generateTextLog(JSONObject info) {
+		StringBuilder sb = new StringBuilder();
+		JSONObject timeSent = JsonUtil.getJsonField(info, "time", new JSONObject());
+		JSONObject member = JsonUtil.getJsonField(info, "member", new JSONObject());
+		JSONObject joined = JsonUtil.getJsonField(info, "joined", new JSONObject());
+		JSONObject left = JsonUtil.getJsonField(info, "left", new JSONObject());
+
+		// Get all necessary attributes of the log
+		String memberUsername = JsonUtil.getJsonField(member, "name", "Unknown");
+		String memberId = JsonUtil.getJsonField(member, "id", "Unknown");
+		String joinedName = JsonUtil.getJsonField(joined, "name", "Unknown");
+		String joinedId = JsonUtil.getJsonField(joined, "id", "Unknown");
+		String leftName = JsonUtil.getJsonField(left, "name", "Unknown");
+		String leftId = JsonUtil.getJsonField(left, "id", "Unknown");
+		String year = JsonUtil.getJsonField(timeSent, "year", "Unknown");
+		String month = JsonUtil.getJsonField(timeSent, "month", "Unknown");
+		String day = JsonUtil.getJsonField(timeSent, "day", "Unknown");
+		String hour = JsonUtil.getJsonField(timeSent, "hour", "Unknown");
+		String minute = JsonUtil.getJsonField(timeSent, "minute", "Unknown");
+		String second = JsonUtil.getJsonField(timeSent, "second", "Unknown");
+		String timeZone = JsonUtil.getJsonField(timeSent, "tz", "Unknown");
+
+		// Combine all info
+		sb.append("-------------------------------------------------------------\n");
+		sb.append(STR."[MEMBER] \{memberUsername} (ID = \{memberId})\n");
+		sb.append(STR."[JOINED] \{joinedName} (ID = \{joinedId})\n");
+		sb.append(STR."[LEFT] \{leftName} (ID = \{leftId})\n");
+		sb.append(STR."[DATE] \{month}/\{day}/\{year}\n");
+		sb.append(STR."[TIME] \{hour}:\{minute}:\{second}\n");
+		sb.append(STR."[TIMEZONE] \{timeZone}\n");
+		sb.append("-------------------------------------------------------------\n");
+
+		return sb.toString();
 	}
 }
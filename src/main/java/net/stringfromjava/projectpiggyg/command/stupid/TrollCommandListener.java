@@ -8,16 +8,16 @@ import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.utils.FileUpload;
 import net.stringfromjava.projectpiggyg.command.CommandListener;
-import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.data.cache.AttachmentBlobStore;
+import net.stringfromjava.projectpiggyg.data.cache.AttachmentDownloadService;
 import net.stringfromjava.projectpiggyg.data.command.CommandOptionData;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
 import net.stringfromjava.projectpiggyg.util.data.JsonUtil;
-import net.stringfromjava.projectpiggyg.util.data.FileUtil;
-import net.stringfromjava.projectpiggyg.util.data.PathUtil;
 import net.stringfromjava.projectpiggyg.util.discord.CommandUtil;
 import net.stringfromjava.projectpiggyg.util.discord.UploadUtil;
 import net.stringfromjava.projectpiggyg.util.discord.UserUtil;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.File;
@@ -50,6 +50,7 @@ public class TrollCommandListener extends CommandListener {
 		User receiver = event.getOption("user").getAsUser();
 		String message = event.getOption("message").getAsString();
 		Message.Attachment attachment = null; // Reassign later since this option isn't required
+		String attachmentHash;
 		File attachmentAsFile;
 		FileUpload attachmentAsFileUpload;
 		OptionMapping attachmentOM = event.getOption("attachment");
@@ -76,12 +77,10 @@ public class TrollCommandListener extends CommandListener {
 		}
 
 		String trollID = String.valueOf(UploadUtil.generateSnowflakeId());
-		String trollFolder = PathUtil.createPath(PathUtil.fromGuildBlobCache(guild.getId(),
-				Constants.System.GUILD_BLOB_CACHE_TROLLS_FOLDER_NAME,
-				trollID
-		));
 
-		attachmentAsFile = (attachment != null) ? FileUtil.convertAttachmentToFile(attachment, trollFolder) : null;
+		// The attachment is only ever stored once, no matter how many times it gets sent
+		attachmentHash = (attachment != null) ? AttachmentDownloadService.get().downloadAttachment(attachment).join() : null;
+		attachmentAsFile = (attachmentHash != null) ? AttachmentBlobStore.getFile(attachmentHash) : null;
 		attachmentAsFileUpload = (attachmentAsFile != null)
 				? FileUpload.fromData(attachmentAsFile, attachment.getFileName())
 				: null;
@@ -95,26 +94,17 @@ public class TrollCommandListener extends CommandListener {
 				onFailure
 		);
 
-		// Add the new troll ID to the logs
-		File trollLogsFile = FileUtil.ensureFileExists(
-				PathUtil.fromGuildLogs(guild.getId(), Constants.System.TROLL_LOG_FILE_NAME),
-				"[]"
-		);
-		JSONArray trollLogs = new JSONArray(FileUtil.getFileData(trollLogsFile));
-		trollLogs.put(trollID);
-		FileUtil.writeToFile(trollLogsFile, trollLogs.toString(2));
-
-		// Create a new JSON file for the troll message
-		File messageFile = FileUtil.createFile(Constants.System.GUILD_BLOB_CACHE_TROLL_INFO_FILE_NAME, trollFolder);
+		// Add the new troll to the logs
 		JSONObject newLog = new JSONObject();
 		newLog.put("author", JsonUtil.createUserInfoJson(event.getUser()))
 				.put("receiver", JsonUtil.createUserInfoJson(receiver))
 				.put("time", JsonUtil.getCurrentTimeJson())
 				.put("attachment", new JSONObject()
-						.put("name", (attachmentAsFile != null) ? attachmentAsFile.getName() : "null")
-						.put("url", (attachment != null) ? attachment.getUrl() : "null"))
+						.put("name", (attachment != null) ? attachment.getFileName() : "null")
+						.put("url", (attachment != null) ? attachment.getUrl() : "null")
+						.put("sha256", attachmentHash))
 				.put("message", message)
 				.put("id", trollID);
-		FileUtil.writeToFile(messageFile, newLog.toString(2));
+		GuildWriteAheadLog.of(guild.getId()).append(GuildLogType.TROLL, newLog);
 	}
 }
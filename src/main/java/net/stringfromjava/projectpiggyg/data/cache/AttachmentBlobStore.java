@@ -0,0 +1,245 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import net.stringfromjava.projectpiggyg.util.data.PathUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * A content-addressed store for attachments, shared by every guild.
+ * <p>
+ * Every attachment is stored once under the SHA-256 hash of its bytes (which is worked out
+ * while the attachment is being downloaded), no matter how many times it was sent. Message and
+ * troll logs only keep the hash. Each blob keeps a reference count in a {@code .refs} file next
+ * to it, and the blob is deleted once nothing references it anymore.
+ */
+public final class AttachmentBlobStore {
+
+	private static final int LOCK_STRIPES = 64;
+	private static final Object[] locks = new Object[LOCK_STRIPES];
+
+	static {
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Stores the bytes of a stream and adds a reference to them. If the exact same bytes
+	 * are already stored, then nothing new is written and only the reference count goes up.
+	 *
+	 * @param in The stream to store. This is read until the end, but isn't closed.
+	 * @return The SHA-256 hash of the bytes.
+	 * @throws IOException If the bytes could not be read or stored.
+	 */
+	@NotNull
+	public static String store(@NotNull InputStream in) throws IOException {
+		Path tempFile = createTempFile();
+		try {
+			// Hash the bytes while they're being copied,
+			// so they only ever have to be read once
+			DigestInputStream digestIn = new DigestInputStream(in, newSha256());
+			try (OutputStream out = Files.newOutputStream(tempFile)) {
+				digestIn.transferTo(out);
+			}
+			String hash = HexFormat.of().formatHex(digestIn.getMessageDigest().digest());
+			adopt(tempFile, hash);
+			return hash;
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Creates an empty temporary file inside the store, to write a new blob into.
+	 * The file should then be handed to {@link #adopt(Path, String)} once it's complete.
+	 *
+	 * @return The path of the new temporary file.
+	 * @throws IOException If the file could not be created.
+	 */
+	static Path createTempFile() throws IOException {
+		Path tempFolder = Paths.get(PathUtil.ensurePathExists(PathUtil.fromAttachmentBlobs("tmp"), false, false));
+		return Files.createTempFile(tempFolder, "blob", ".part");
+	}
+
+	/**
+	 * Moves a complete temporary file into the store and adds a reference to it. If a blob
+	 * with the same hash is already stored, then the temporary file is left where it is and
+	 * only the reference count goes up (the caller is expected to delete the temporary file).
+	 *
+	 * @param tempFile The temporary file, from {@link #createTempFile()}.
+	 * @param hash     The SHA-256 hash of the temporary file's bytes.
+	 * @throws IOException If the file could not be moved into the store.
+	 */
+	static void adopt(Path tempFile, String hash) throws IOException {
+		synchronized (lockFor(hash)) {
+			Path blobPath = getBlobPath(hash);
+			if (!Files.exists(blobPath)) {
+				Files.createDirectories(blobPath.getParent());
+				Files.move(tempFile, blobPath, StandardCopyOption.ATOMIC_MOVE);
+			}
+			writeRefCount(hash, readRefCount(hash) + 1);
+		}
+	}
+
+	/**
+	 * Adds a reference to a blob that is already stored.
+	 *
+	 * @param hash The SHA-256 hash of the blob.
+	 * @return If the blob exists (and the reference was added).
+	 */
+	public static boolean acquire(@NotNull String hash) {
+		synchronized (lockFor(hash)) {
+			if (!Files.exists(getBlobPath(hash))) {
+				return false;
+			}
+			writeRefCount(hash, readRefCount(hash) + 1);
+			return true;
+		}
+	}
+
+	/**
+	 * Adds a reference to every blob inside an array of {@code {"name", "sha256"}} objects.
+	 * Any blob that isn't stored anymore is removed from the array.
+	 *
+	 * @param blobs The blobs to acquire.
+	 */
+	public static void acquireBlobs(@NotNull JSONArray blobs) {
+		for (int i = blobs.length() - 1; i >= 0; i--) {
+			String hash = blobs.optJSONObject(i, new JSONObject()).optString("sha256", null);
+			if (hash == null || !acquire(hash)) {
+				blobs.remove(i);
+			}
+		}
+	}
+
+	/**
+	 * Removes a reference to a blob. Once a blob has no references left, it gets deleted.
+	 *
+	 * @param hash The SHA-256 hash of the blob.
+	 */
+	public static void release(@NotNull String hash) {
+		synchronized (lockFor(hash)) {
+			int refCount = readRefCount(hash) - 1;
+			if (refCount > 0) {
+				writeRefCount(hash, refCount);
+				return;
+			}
+			try {
+				Files.deleteIfExists(getBlobPath(hash));
+				Files.deleteIfExists(getRefCountPath(hash));
+			} catch (IOException e) {
+				LoggerUtil.log(
+						LogCategory.CACHE,
+						LogType.WARN,
+						() -> STR."Failed to delete unused attachment blob '\{hash}', got this error message: '\{e.getMessage()}'"
+				);
+			}
+		}
+	}
+
+	/**
+	 * Removes a reference to every blob that's listed in the {@code attachment-blobs}
+	 * array of a cached message.
+	 *
+	 * @param message The cached message's info.
+	 */
+	public static void releaseMessageBlobs(@NotNull JSONObject message) {
+		JSONObject messageInfo = message.optJSONObject("message", new JSONObject());
+		releaseBlobs(messageInfo.optJSONArray("attachment-blobs", new JSONArray()));
+	}
+
+	/**
+	 * Removes a reference to every blob inside an array of {@code {"name", "sha256"}} objects.
+	 *
+	 * @param blobs The blobs to release.
+	 */
+	public static void releaseBlobs(@NotNull JSONArray blobs) {
+		for (int i = 0; i < blobs.length(); i++) {
+			String hash = blobs.optJSONObject(i, new JSONObject()).optString("sha256", null);
+			if (hash != null) {
+				release(hash);
+			}
+		}
+	}
+
+	/**
+	 * Gets the file of a stored blob.
+	 *
+	 * @param hash The SHA-256 hash of the blob.
+	 * @return The blob's file, or {@code null} if it isn't stored.
+	 */
+	@Nullable
+	public static File getFile(@NotNull String hash) {
+		File file = getBlobPath(hash).toFile();
+		return file.isFile() ? file : null;
+	}
+
+	private static Path getBlobPath(String hash) {
+		// Split blobs into folders by the first two characters
+		// of their hash so no single folder gets too big
+		return Paths.get(PathUtil.fromAttachmentBlobs(hash.substring(0, 2), hash));
+	}
+
+	private static Path getRefCountPath(String hash) {
+		return Paths.get(STR."\{getBlobPath(hash)}.refs");
+	}
+
+	private static int readRefCount(String hash) {
+		try {
+			return Integer.parseInt(Files.readString(getRefCountPath(hash), StandardCharsets.UTF_8).trim());
+		} catch (IOException | NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static void writeRefCount(String hash, int refCount) {
+		Path refCountPath = getRefCountPath(hash);
+		try {
+			// Write to a temporary file first so a crash can never leave behind an empty
+			// count, which would get the blob deleted while something still uses it
+			Path tempPath = refCountPath.resolveSibling(STR."\{refCountPath.getFileName()}.tmp");
+			Files.writeString(tempPath, Integer.toString(refCount), StandardCharsets.UTF_8);
+			Files.move(tempPath, refCountPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LoggerUtil.log(
+					LogCategory.CACHE,
+					LogType.WARN,
+					() -> STR."Failed to update the reference count of attachment blob '\{hash}', got this error message: '\{e.getMessage()}'"
+			);
+		}
+	}
+
+	private static Object lockFor(String hash) {
+		return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+	}
+
+	static MessageDigest newSha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 isn't supported by this Java runtime!", e);
+		}
+	}
+
+	private AttachmentBlobStore() {
+	}
+}
@@ -0,0 +1,301 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.stringfromjava.projectpiggyg.util.app.AppUtil;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Downloads attachments into the {@link AttachmentBlobStore} in the background.
+ * <p>
+ * Downloads are queued up and run on virtual threads, so nothing that asks for a download
+ * (like a message event) ever has to wait on it. Only a limited number of downloads are
+ * in flight at once, and they all share one HTTP/2 client, so requests to Discord's CDN
+ * reuse the same connections. Each download is streamed straight into a file while its
+ * hash is worked out, and downloads that fail because of the network or the server are
+ * tried again with an exponential backoff.
+ */
+public final class AttachmentDownloadService {
+
+	/**
+	 * A snapshot of how the downloads of a service are going.
+	 *
+	 * @param downloaded How many downloads finished.
+	 * @param failed     How many downloads failed, even after being retried.
+	 * @param retries    How many times a download was retried.
+	 * @param bytes      How many bytes were downloaded in total.
+	 * @param inFlight   How many downloads are running right now.
+	 * @param waiting    How many downloads are waiting for a spot to run.
+	 */
+	public record Metrics(long downloaded, long failed, long retries, long bytes, int inFlight, int waiting) {
+	}
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+	private static AttachmentDownloadService instance;
+
+	private final HttpClient client;
+	private final int maxAttempts;
+	private final Duration baseBackoff;
+	private final Semaphore inFlightPermits;
+	private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+			Thread.ofVirtual().name("piggyg-download-", 0).factory()
+	);
+	private final LongAdder downloaded = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	/**
+	 * Creates a new download service.
+	 *
+	 * @param client      The client to send every request with.
+	 * @param maxInFlight The most downloads that can run at the same time.
+	 * @param maxAttempts How many times a download is tried before it's given up on.
+	 * @param baseBackoff How long to wait before the first retry. Each retry after that waits twice as long.
+	 */
+	public AttachmentDownloadService(@NotNull HttpClient client, int maxInFlight, int maxAttempts, @NotNull Duration baseBackoff) {
+		this.client = client;
+		this.inFlightPermits = new Semaphore(Math.max(maxInFlight, 1));
+		this.maxAttempts = Math.max(maxAttempts, 1);
+		this.baseBackoff = baseBackoff;
+	}
+
+	/**
+	 * Configures the shared download service from the {@code config.properties} file.
+	 * This must be called after {@link AppUtil#configure()}.
+	 */
+	public static void configure() {
+		HttpClient client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(Duration.ofSeconds(10))
+				.build();
+		instance = new AttachmentDownloadService(
+				client,
+				Math.clamp(AppUtil.getConfigLong("attachment_downloads_in_flight", 16), 1, 256),
+				Math.clamp(AppUtil.getConfigLong("attachment_download_attempts", 4), 1, 10),
+				Duration.ofMillis(Math.clamp(AppUtil.getConfigLong("attachment_download_backoff_ms", 500), 0, MAX_BACKOFF.toMillis()))
+		);
+	}
+
+	/**
+	 * @return The shared download service, which is set up by {@link #configure()}.
+	 */
+	@NotNull
+	public static AttachmentDownloadService get() {
+		if (instance == null) {
+			throw new IllegalStateException("The attachment download service hasn't been configured yet!");
+		}
+		return instance;
+	}
+
+	/**
+	 * Queues up an attachment to be downloaded into the {@link AttachmentBlobStore}.
+	 * Any failure is logged, so the returned future never completes exceptionally.
+	 *
+	 * @param attachment The attachment to download.
+	 * @return A {@link java.util.concurrent.CompletableFuture} with the SHA-256 hash of the
+	 * attachment, or {@code null} if it failed to download.
+	 */
+	@NotNull
+	public CompletableFuture<String> downloadAttachment(@NotNull Message.Attachment attachment) {
+		return download(URI.create(attachment.getUrl())).exceptionally(e -> {
+			Throwable cause = (e instanceof CompletionException) ? e.getCause() : e;
+			LoggerUtil.log(
+					LogCategory.CACHE,
+					LogType.ERROR,
+					() -> STR."Failed to store attachment '\{attachment.getFileName()}', got this error message: '\{cause.getMessage()}'"
+			);
+			return null;
+		});
+	}
+
+	/**
+	 * Queues up a file to be downloaded into the {@link AttachmentBlobStore}.
+	 * Once downloaded, the blob has a reference added to it for the caller.
+	 *
+	 * @param uri The URI of the file.
+	 * @return A {@link java.util.concurrent.CompletableFuture} with the SHA-256 hash of the file,
+	 * which completes exceptionally if the file couldn't be downloaded.
+	 */
+	@NotNull
+	public CompletableFuture<String> download(@NotNull URI uri) {
+		return CompletableFuture.supplyAsync(() -> {
+			waiting.incrementAndGet();
+			try {
+				inFlightPermits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("The download service was shut down");
+			} finally {
+				waiting.decrementAndGet();
+			}
+			inFlight.incrementAndGet();
+			try {
+				String hash = downloadWithRetries(uri);
+				downloaded.increment();
+				return hash;
+			} catch (RuntimeException e) {
+				failed.increment();
+				throw e;
+			} finally {
+				inFlight.decrementAndGet();
+				inFlightPermits.release();
+			}
+		}, executor);
+	}
+
+	/**
+	 * @return A snapshot of how the downloads of {@code this} service are going.
+	 */
+	@NotNull
+	public Metrics getMetrics() {
+		return new Metrics(downloaded.sum(), failed.sum(), retries.sum(), bytes.sum(), inFlight.get(), waiting.get());
+	}
+
+	/**
+	 * Stops every download that is still queued up or running.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private String downloadWithRetries(URI uri) {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return downloadOnce(uri);
+			} catch (IOException e) {
+				boolean retryable = !(e instanceof HttpStatusException statusError) || statusError.isRetryable();
+				if (!retryable || attempt >= maxAttempts) {
+					throw new CompletionException(e);
+				}
+				retries.increment();
+				Duration retryAfter = (e instanceof HttpStatusException statusError) ? statusError.retryAfter : Duration.ZERO;
+				sleep(backoffFor(attempt, retryAfter));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("The download service was shut down");
+			}
+		}
+	}
+
+	private String downloadOnce(URI uri) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(uri)
+				.timeout(REQUEST_TIMEOUT)
+				.GET()
+				.build();
+		HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+		try (InputStream body = response.body()) {
+			if (response.statusCode() != 200) {
+				throw new HttpStatusException(response);
+			}
+
+			// Write the body straight into the store's temporary file,
+			// hashing each chunk on the way through
+			Path tempFile = AttachmentBlobStore.createTempFile();
+			try {
+				MessageDigest digest = AttachmentBlobStore.newSha256();
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					int read;
+					while ((read = body.read(buffer.array())) != -1) {
+						digest.update(buffer.array(), 0, read);
+						buffer.clear().limit(read);
+						while (buffer.hasRemaining()) {
+							out.write(buffer);
+						}
+						bytes.add(read);
+					}
+				}
+				String hash = HexFormat.of().formatHex(digest.digest());
+				AttachmentBlobStore.adopt(tempFile, hash);
+				return hash;
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+		}
+	}
+
+	private Duration backoffFor(int attempt, Duration retryAfter) {
+		// Add some jitter, so downloads that failed at the same time don't all retry at the same time
+		long backoffMillis = baseBackoff.toMillis() << Math.min(attempt - 1, 16);
+		backoffMillis = (long) (backoffMillis * ThreadLocalRandom.current().nextDouble(0.5, 1.0));
+		return Duration.ofMillis(Math.min(Math.max(backoffMillis, retryAfter.toMillis()), MAX_BACKOFF.toMillis()));
+	}
+
+	private static void sleep(Duration duration) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(duration.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("The download service was shut down");
+		}
+	}
+
+	/**
+	 * Thrown when a download gets a response that isn't {@code 200 OK}.
+	 */
+	private static final class HttpStatusException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int statusCode;
+		private final Duration retryAfter;
+
+		private HttpStatusException(HttpResponse<?> response) {
+			super(STR."Got HTTP status \{response.statusCode()} from '\{response.uri()}'");
+			statusCode = response.statusCode();
+			retryAfter = parseRetryAfter(response);
+		}
+
+		private static Duration parseRetryAfter(HttpResponse<?> response) {
+			try {
+				return Duration.ofSeconds(Math.max(response.headers().firstValueAsLong("Retry-After").orElse(0), 0));
+			} catch (NumberFormatException e) {
+				// The header can also be an HTTP date, which isn't worth handling here
+				return Duration.ZERO;
+			}
+		}
+
+		/**
+		 * @return If the request could work when tried again. Being rate limited or
+		 * an error on the server's side could, but a missing file never will.
+		 */
+		private boolean isRetryable() {
+			return statusCode == 429 || statusCode >= 500;
+		}
+	}
+}
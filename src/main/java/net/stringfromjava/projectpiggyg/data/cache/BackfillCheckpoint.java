@@ -0,0 +1,42 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import org.json.JSONObject;
+
+/**
+ * Record for holding how far the message history of a channel has been cached.
+ * <p>
+ * Only history fetched by the backfill moves the checkpoint forward. Messages cached by the
+ * live listener never do, so there can never be a gap between the checkpoint and the live cache.
+ *
+ * @param newest   The ID (snowflake) of the newest message the backfill has reached,
+ *                 or {@code 0} if the channel had no messages.
+ * @param oldest   The ID (snowflake) of the oldest message the backfill has reached,
+ *                 or {@code 0} if the channel had no messages.
+ * @param complete Has the backfill reached the very first message of the channel?
+ */
+public record BackfillCheckpoint(long newest, long oldest, boolean complete) {
+
+	/**
+	 * Creates a checkpoint from its JSON form.
+	 *
+	 * @param json The checkpoint as JSON.
+	 * @return The checkpoint.
+	 */
+	public static BackfillCheckpoint fromJson(JSONObject json) {
+		return new BackfillCheckpoint(
+				json.optLong("newest", 0),
+				json.optLong("oldest", 0),
+				json.optBoolean("complete", false)
+		);
+	}
+
+	/**
+	 * @return {@code this} checkpoint as JSON.
+	 */
+	public JSONObject toJson() {
+		return new JSONObject()
+				.put("newest", newest)
+				.put("oldest", oldest)
+				.put("complete", complete);
+	}
+}
@@ -0,0 +1,380 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.stringfromjava.projectpiggyg.util.app.AppUtil;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogContext;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import net.stringfromjava.projectpiggyg.util.discord.GuildUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caches the message history of every channel in a guild, with many channels at once.
+ * <p>
+ * Each channel is backfilled on its own virtual thread, so waiting on Discord for one channel
+ * never holds up the others. Discord limits message history requests per channel, so the number
+ * of channels fetched at once is capped, and every request also takes a token from a global
+ * bucket so PiggyG stays under Discord's global rate limit (with room left over for commands).
+ * How long a backfill takes then depends on the rate limit, not on how many channels there are.
+ */
+public final class BackfillScheduler {
+
+	private static final int HISTORY_PAGE_SIZE = MessageHistoryIterator.MAX_PAGE_SIZE;
+
+	private static final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+			Thread.ofVirtual().name("piggyg-backfill-", 0).factory()
+	);
+	private static final Map<String, GuildProgress> runningBackfills = new ConcurrentHashMap<>();
+	private static Semaphore channelPermits;
+	private static TokenBucket requestBucket;
+
+	/**
+	 * Configures the scheduler from the {@code config.properties} file.
+	 * This must be called after {@link AppUtil#configure()}.
+	 */
+	public static void configure() {
+		channelPermits = new Semaphore(Math.clamp(AppUtil.getConfigLong("backfill_max_concurrent_channels", 8), 1, 256));
+		requestBucket = new TokenBucket(Math.clamp(AppUtil.getConfigLong("backfill_requests_per_second", 40), 1, 50));
+	}
+
+	/**
+	 * Starts caching the message history of every channel in a guild. If the guild
+	 * is already being backfilled, then the backfill that's already running is returned.
+	 *
+	 * @param guild   The guild to cache the messages of.
+	 * @param logInfo Should the progress be logged?
+	 * @return A {@link java.util.concurrent.CompletableFuture} that completes once every channel is done.
+	 */
+	@NotNull
+	public static CompletableFuture<Void> schedule(@NotNull Guild guild, boolean logInfo) {
+		GuildProgress backfill = runningBackfills.computeIfAbsent(guild.getId(), k -> startBackfill(guild, logInfo));
+		backfill.done.whenComplete((result, error) -> runningBackfills.remove(guild.getId(), backfill));
+		return backfill.done;
+	}
+
+	/**
+	 * Stops the backfill of a guild, if one is running, and waits for every channel that's in
+	 * the middle of a page to finish it. Channels that haven't started yet never open their message
+	 * store, and the rest stop before their next page. This must be called before the guild's
+	 * message stores are closed, so nothing opens them again or adds blob references afterward.
+	 *
+	 * @param guildId The ID of the guild.
+	 */
+	public static void cancel(String guildId) {
+		GuildProgress backfill = runningBackfills.remove(guildId);
+		if (backfill != null) {
+			backfill.cancel();
+		}
+	}
+
+	/**
+	 * Checks if a guild's message history is still being cached. While it is, anything
+	 * that reads cached messages may not find messages that were sent while PiggyG was offline.
+	 *
+	 * @param guildId The ID of the guild.
+	 * @return If the guild is still being backfilled.
+	 */
+	public static boolean isBackfilling(String guildId) {
+		return runningBackfills.containsKey(guildId);
+	}
+
+	private static GuildProgress startBackfill(Guild guild, boolean logInfo) {
+		List<GuildMessageChannel> channels = new ArrayList<>();
+		for (GuildChannel channel : guild.getChannels()) {
+			if (channel instanceof GuildMessageChannel messageChannel) {
+				channels.add(messageChannel);
+			}
+		}
+
+		GuildProgress progress = new GuildProgress(guild, channels.size(), logInfo);
+		CompletableFuture<?>[] channelTasks = channels.stream()
+				.map(channel -> CompletableFuture.runAsync(() -> backfillChannel(channel, progress), executor))
+				.toArray(CompletableFuture[]::new);
+		progress.done = CompletableFuture.allOf(channelTasks).whenComplete((result, error) -> progress.finish());
+		return progress;
+	}
+
+	/**
+	 * Stops every backfill that is still running. Every channel
+	 * picks up where it left off the next time it gets backfilled.
+	 */
+	public static void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private static void backfillChannel(GuildMessageChannel channel, GuildProgress progress) {
+		try {
+			channelPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (!progress.channelStarted()) {
+			// The guild was left while the channel was waiting for its turn
+			channelPermits.release();
+			return;
+		}
+		try {
+			MessageSegmentStore store = MessageSegmentStore.of(channel.getGuild().getId(), channel.getId());
+			// Move over any messages that were cached with the old folder-per-message layout
+			int imported = store.importLegacyMessages();
+			if (imported > 0 && progress.logInfo) {
+				LoggerUtil.log(LogCategory.CACHE, LogType.INFO, LogContext.EMPTY.withGuild(channel.getGuild().getId()), () -> STR."Moved \{imported} cached message\{imported != 1 ? "s" : ""} of channel '\{channel.getName()}' into message segments...");
+			}
+			long startTime = System.nanoTime();
+			int cached = backfillChannel(channel, store, progress);
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+			LogContext context = LogContext.EMPTY
+					.withGuild(channel.getGuild().getId())
+					.withChannel(channel.getId())
+					.withLatency(millis);
+			LoggerUtil.log(LogCategory.CACHE, LogType.DEBUG, context, () -> STR."Cached \{cached} new message\{cached != 1 ? "s" : ""} of channel '\{channel.getName()}' in \{millis}ms");
+			progress.channelDone(cached);
+		} catch (CancellationException e) {
+			// PiggyG is shutting down (or left the guild), so the checkpoint is left as is
+		} catch (RuntimeException e) {
+			LoggerUtil.log(
+					LogCategory.CACHE,
+					LogType.WARN,
+					() -> STR."Failed to cache the messages of channel '\{channel.getName()}' (ID = \{channel.getId()}), got this error: '\{e.getMessage()}'"
+			);
+			progress.channelDone(0);
+		} finally {
+			progress.channelStopped();
+			channelPermits.release();
+		}
+	}
+
+	/**
+	 * Caches every message of a channel that hasn't been cached yet. Messages sent after
+	 * the channel's checkpoint are fetched first, followed by any older history that wasn't
+	 * reached yet. The checkpoint is saved after every page, so if PiggyG is stopped in the
+	 * middle of this, it picks up right where it left off on the next start.
+	 *
+	 * @return How many messages were cached.
+	 */
+	private static int backfillChannel(GuildMessageChannel channel, MessageSegmentStore store, GuildProgress progress) {
+		BackfillCheckpoint checkpoint = store.getCheckpoint();
+		int cached = 0;
+
+		if (checkpoint != null) {
+			// Catch up on everything that was sent while PiggyG was offline
+			MessageHistoryIterator newer = MessageHistoryIterator.after(channel, checkpoint.newest(), HISTORY_PAGE_SIZE, BackfillScheduler::acquireRequestToken);
+			while (newer.hasNext()) {
+				progress.throwIfCancelled();
+				List<Message> page = newer.next();
+				cached += cacheHistoryPage(page, store);
+				checkpoint = new BackfillCheckpoint(
+						newestIdOf(page, checkpoint.newest()),
+						(checkpoint.oldest() != 0) ? checkpoint.oldest() : oldestIdOf(page, 0),
+						checkpoint.complete()
+				);
+				store.saveCheckpoint(checkpoint);
+			}
+			if (checkpoint.complete()) {
+				return cached;
+			}
+		}
+
+		// Keep going back in time until the very first message has been cached
+		// (or start from the newest message if this is the first time seeing this channel)
+		long startBefore = (checkpoint != null) ? checkpoint.oldest() : 0;
+		MessageHistoryIterator older = MessageHistoryIterator.before(channel, startBefore, HISTORY_PAGE_SIZE, BackfillScheduler::acquireRequestToken);
+		while (older.hasNext()) {
+			progress.throwIfCancelled();
+			List<Message> page = older.next();
+			cached += cacheHistoryPage(page, store);
+			checkpoint = (checkpoint != null)
+					? new BackfillCheckpoint(checkpoint.newest(), oldestIdOf(page, checkpoint.oldest()), false)
+					: new BackfillCheckpoint(newestIdOf(page, 0), oldestIdOf(page, 0), false);
+			store.saveCheckpoint(checkpoint);
+		}
+		progress.throwIfCancelled();
+		store.saveCheckpoint((checkpoint != null)
+				? new BackfillCheckpoint(checkpoint.newest(), checkpoint.oldest(), true)
+				: new BackfillCheckpoint(0, 0, true));
+		return cached;
+	}
+
+	private static void acquireRequestToken() {
+		try {
+			requestBucket.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("The backfill was stopped");
+		}
+	}
+
+	private static int cacheHistoryPage(List<Message> page, MessageSegmentStore store) {
+		List<CompletableFuture<Void>> pending = new ArrayList<>();
+		for (Message message : page) {
+			// Messages cached by the live listener are skipped
+			if (!store.contains(message.getIdLong())) {
+				pending.add(GuildUtil.cacheMessage(message));
+			}
+		}
+		// Wait for the page's attachments to download before the checkpoint moves past them
+		CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+		return pending.size();
+	}
+
+	private static long newestIdOf(List<Message> page, long defaultId) {
+		return page.stream().mapToLong(Message::getIdLong).max().orElse(defaultId);
+	}
+
+	private static long oldestIdOf(List<Message> page, long defaultId) {
+		return page.stream().mapToLong(Message::getIdLong).min().orElse(defaultId);
+	}
+
+	/**
+	 * Keeps track of (and logs) how far along the backfill of a single guild is.
+	 */
+	private static final class GuildProgress {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition channelsStopped = lock.newCondition();
+		private final Guild guild;
+		private final int channelCount;
+		private final boolean logInfo;
+		private final long startTime = System.nanoTime();
+		private final AtomicInteger channelsDone = new AtomicInteger();
+		private final AtomicLong messagesCached = new AtomicLong();
+		private CompletableFuture<Void> done;
+		private volatile boolean cancelled;
+		// How many channels are being backfilled right now
+		private int activeChannels;
+
+		private GuildProgress(Guild guild, int channelCount, boolean logInfo) {
+			this.guild = guild;
+			this.channelCount = channelCount;
+			this.logInfo = logInfo;
+			if (logInfo) {
+				LoggerUtil.log(LogCategory.CACHE, LogType.INFO, LogContext.EMPTY.withGuild(guild.getId()), () -> STR."Caching messages of \{channelCount} channel\{channelCount != 1 ? "s" : ""} for guild '\{guild.getName()}' (ID = \{guild.getId()})...");
+			}
+		}
+
+		private void channelDone(int cached) {
+			int done = channelsDone.incrementAndGet();
+			long total = messagesCached.addAndGet(cached);
+			if (logInfo && cached > 0) {
+				LoggerUtil.log(LogCategory.CACHE, LogType.INFO, LogContext.EMPTY.withGuild(guild.getId()), () -> STR."[\{guild.getName()}] \{done}/\{channelCount} channels done, \{total} new message\{total != 1 ? "s" : ""} cached so far...");
+			}
+		}
+
+		/**
+		 * @return {@code false} if the backfill was cancelled, meaning the channel shouldn't be started.
+		 */
+		private boolean channelStarted() {
+			lock.lock();
+			try {
+				if (cancelled) {
+					return false;
+				}
+				activeChannels++;
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void channelStopped() {
+			lock.lock();
+			try {
+				activeChannels--;
+				channelsStopped.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void throwIfCancelled() {
+			if (cancelled) {
+				throw new CancellationException("The backfill was cancelled");
+			}
+		}
+
+		private void cancel() {
+			lock.lock();
+			try {
+				cancelled = true;
+				while (activeChannels > 0) {
+					channelsStopped.awaitUninterruptibly();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void finish() {
+			if (logInfo && !cancelled) {
+				long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+				LoggerUtil.log(LogCategory.CACHE, LogType.INFO, LogContext.EMPTY.withGuild(guild.getId()), () -> STR."Finished caching messages for guild '\{guild.getName()}' (\{messagesCached.get()} new messages in \{seconds}s)...");
+			}
+		}
+	}
+
+	/**
+	 * A simple token bucket that hands out a fixed number of requests per second,
+	 * with bursts of up to one second's worth of requests.
+	 * <p>
+	 * NOTE: This uses a {@link java.util.concurrent.locks.ReentrantLock} instead of
+	 * {@code synchronized}, since virtual threads that block inside a {@code synchronized}
+	 * block pin the carrier thread they're running on.
+	 */
+	private static final class TokenBucket {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final double capacity;
+		private final double tokensPerNano;
+		private double tokens;
+		private long lastRefill = System.nanoTime();
+
+		private TokenBucket(long tokensPerSecond) {
+			capacity = tokensPerSecond;
+			tokensPerNano = tokensPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+			tokens = capacity;
+		}
+
+		private void acquire() throws InterruptedException {
+			while (true) {
+				long waitNanos;
+				lock.lock();
+				try {
+					long now = System.nanoTime();
+					tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+					lastRefill = now;
+					if (tokens >= 1) {
+						tokens--;
+						return;
+					}
+					waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+				} finally {
+					lock.unlock();
+				}
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			}
+		}
+	}
+
+	private BackfillScheduler() {
+	}
+}
@@ -0,0 +1,179 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A Bloom filter of the message IDs (snowflakes) that are cached in a channel.
+ * <p>
+ * If the filter says a message isn't cached, then it definitely isn't, which lets a channel's
+ * message store be skipped entirely (without it having to be opened). If it says a message might
+ * be cached, then the store has to be checked to know for sure. With about 10 bits for each
+ * message, that only happens for around 1% of the messages that aren't cached.
+ * <p>
+ * Messages can't be taken back out of a Bloom filter, so messages that got evicted are still
+ * "maybe cached" until the filter is built again, which happens once it's full or when it can't
+ * be loaded from the disk.
+ * <p>
+ * A saved filter also remembers the end of the last record inside the store it covers, so it can
+ * tell if records were added after it was saved (for example, if PiggyG crashed before saving it again).
+ */
+final class MessageBloomFilter {
+
+	private static final int FILE_VERSION = 2;
+	private static final int BITS_PER_MESSAGE = 10;
+	private static final int HASH_COUNT = 7;
+	private static final int MIN_CAPACITY = 1024;
+
+	private final long[] bits;
+	private final long bitCount;
+	private final int capacity;
+	private int count;
+	private long coveredUntil;
+
+	private MessageBloomFilter(long[] bits, int capacity, int count, long coveredUntil) {
+		this.bits = bits;
+		this.bitCount = (long) bits.length * Long.SIZE;
+		this.capacity = capacity;
+		this.count = count;
+		this.coveredUntil = coveredUntil;
+	}
+
+	/**
+	 * Creates an empty filter.
+	 *
+	 * @param capacity How many messages the filter should hold before it gets too inaccurate.
+	 * @return The new filter.
+	 */
+	static MessageBloomFilter create(int capacity) {
+		capacity = Math.max(capacity, MIN_CAPACITY);
+		int words = (int) Math.min(((long) capacity * BITS_PER_MESSAGE + Long.SIZE - 1) / Long.SIZE, Integer.MAX_VALUE - 8);
+		return new MessageBloomFilter(new long[words], capacity, 0, 0);
+	}
+
+	/**
+	 * Adds a message to the filter.
+	 *
+	 * @param messageId The ID (snowflake) of the message.
+	 */
+	void add(long messageId) {
+		long hash1 = mix(messageId);
+		long hash2 = mix(hash1) | 1;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+		count++;
+	}
+
+	/**
+	 * Checks if a message might be cached.
+	 *
+	 * @param messageId The ID (snowflake) of the message.
+	 * @return {@code false} if the message definitely isn't cached, or {@code true} if it might be.
+	 */
+	boolean mightContain(long messageId) {
+		long hash1 = mix(messageId);
+		long hash2 = mix(hash1) | 1;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return If more messages were added than {@code this} filter was made for, which
+	 * means it should be built again with a bigger capacity.
+	 */
+	boolean isFull() {
+		return count > capacity;
+	}
+
+	/**
+	 * @return How many messages {@code this} filter was made for.
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return Where the store was written up to when {@code this} filter was saved (the
+	 * segment number in the upper 32 bits, and the offset in the lower 32 bits).
+	 */
+	long getCoveredUntil() {
+		return coveredUntil;
+	}
+
+	/**
+	 * Saves the filter to a file. The file is written to a temporary file first,
+	 * so a crash in the middle of this never leaves half a filter behind.
+	 *
+	 * @param path         The path to save the filter to.
+	 * @param coveredUntil Where the store is written up to, with every message before it added to the filter.
+	 * @throws IOException If the filter could not be saved.
+	 */
+	void write(Path path, long coveredUntil) throws IOException {
+		this.coveredUntil = coveredUntil;
+		Path tempPath = path.resolveSibling(STR."\{path.getFileName()}.tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+			out.writeInt(FILE_VERSION);
+			out.writeInt(capacity);
+			out.writeInt(count);
+			out.writeLong(coveredUntil);
+			out.writeInt(bits.length);
+			for (long word : bits) {
+				out.writeLong(word);
+			}
+		}
+		Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads a filter that was saved with {@link #write(Path, long)}.
+	 *
+	 * @param path The path the filter was saved to.
+	 * @return The filter, or {@code null} if it doesn't exist or couldn't be read.
+	 */
+	@Nullable
+	static MessageBloomFilter read(Path path) {
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != FILE_VERSION) {
+				return null;
+			}
+			int capacity = in.readInt();
+			int count = in.readInt();
+			long coveredUntil = in.readLong();
+			long[] bits = new long[in.readInt()];
+			for (int i = 0; i < bits.length; i++) {
+				bits[i] = in.readLong();
+			}
+			return (bits.length > 0) ? new MessageBloomFilter(bits, capacity, count, coveredUntil) : null;
+		} catch (IOException | NegativeArraySizeException e) {
+			return null;
+		}
+	}
+
+	private static long mix(long value) {
+		// The finalizer from MurmurHash3, since snowflakes share most of their bits
+		value ^= value >>> 33;
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= value >>> 33;
+		value *= 0xC4CEB9FE1A85EC53L;
+		value ^= value >>> 33;
+		return value;
+	}
+}
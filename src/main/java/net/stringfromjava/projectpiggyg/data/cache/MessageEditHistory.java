@@ -0,0 +1,151 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import net.stringfromjava.projectpiggyg.util.app.AppUtil;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of every revision of a cached message's contents.
+ * <p>
+ * Instead of keeping a full copy of the contents for every edit, a cached message keeps its
+ * {@code original-contents} once, and each edit in its {@code edit-history} only keeps what changed
+ * from the revision before it (where the change starts, how many characters were cut and the text
+ * that was put in their place). Most edits only fix a typo or add a few words, so each one usually
+ * only takes up a few bytes, and every revision can be rebuilt by applying the edits in order.
+ * <p>
+ * To keep messages that get edited constantly (like a bot's status message) from growing forever,
+ * only a limited number of edits are kept. Once there are too many, the oldest edit is folded into
+ * the original contents.
+ */
+public final class MessageEditHistory {
+
+	/**
+	 * A single revision of a message's contents.
+	 *
+	 * @param number   Which revision this is, where {@code 0} is the original contents.
+	 * @param contents The contents of the message at this revision.
+	 * @param time     When the message was edited into this revision, which is empty for the original contents.
+	 */
+	public record Revision(int number, String contents, JSONObject time) {
+	}
+
+	private static int maxEdits = 50;
+
+	/**
+	 * Configures the edit history from the {@code config.properties} file.
+	 * This must be called after {@link AppUtil#configure()}.
+	 */
+	public static void configure() {
+		maxEdits = Math.clamp(AppUtil.getConfigLong("message_edit_history_limit", 50), 1, 10_000);
+	}
+
+	/**
+	 * Adds an edit to a cached message and updates its {@code contents}.
+	 *
+	 * @param record      The cached message's info.
+	 * @param newContents The new contents of the message.
+	 * @param time        When the message was edited, usually from
+	 *                    {@link net.stringfromjava.projectpiggyg.util.data.JsonUtil#getCurrentTimeJson()}.
+	 * @return If the contents changed. Discord also sends edits when only an embed
+	 * was loaded, which are ignored since they don't change the contents.
+	 */
+	public static boolean recordEdit(@NotNull JSONObject record, @NotNull String newContents, @NotNull JSONObject time) {
+		JSONObject messageInfo = record.getJSONObject("message");
+		String oldContents = messageInfo.optString("contents", "");
+		if (oldContents.equals(newContents)) {
+			return false;
+		}
+
+		if (!record.has("original-contents")) {
+			record.put("original-contents", oldContents);
+		}
+		JSONArray edits = record.optJSONArray("edit-history");
+		if (edits == null) {
+			edits = new JSONArray();
+			record.put("edit-history", edits);
+		}
+		edits.put(createDelta(oldContents, newContents).put("time", time));
+		messageInfo.put("contents", newContents);
+
+		// Fold the oldest edits into the original contents once there are too many
+		if (edits.length() > maxEdits) {
+			String original = record.getString("original-contents");
+			while (edits.length() > maxEdits) {
+				original = applyDelta(original, edits.getJSONObject(0));
+				edits.remove(0);
+				record.put("dropped-edits", record.optInt("dropped-edits", 0) + 1);
+			}
+			record.put("original-contents", original);
+		}
+		return true;
+	}
+
+	/**
+	 * Rebuilds every revision of a cached message's contents.
+	 *
+	 * @param record The cached message's info.
+	 * @return Every revision, from oldest to newest. If the message was never edited,
+	 * then only its current contents are returned.
+	 */
+	@NotNull
+	public static List<Revision> getRevisions(@NotNull JSONObject record) {
+		JSONObject messageInfo = record.optJSONObject("message", new JSONObject());
+		JSONArray edits = record.optJSONArray("edit-history", new JSONArray());
+		List<Revision> revisions = new ArrayList<>();
+
+		if (!record.has("original-contents")) {
+			revisions.add(new Revision(0, messageInfo.optString("contents", ""), new JSONObject()));
+			return revisions;
+		}
+
+		int number = record.optInt("dropped-edits", 0);
+		String contents = record.getString("original-contents");
+		revisions.add(new Revision(number, contents, new JSONObject()));
+		for (int i = 0; i < edits.length(); i++) {
+			JSONObject edit = edits.getJSONObject(i);
+			contents = applyDelta(contents, edit);
+			revisions.add(new Revision(++number, contents, edit.optJSONObject("time", new JSONObject())));
+		}
+		return revisions;
+	}
+
+	private static JSONObject createDelta(String oldContents, String newContents) {
+		int maxShared = Math.min(oldContents.length(), newContents.length());
+
+		// Find how much of the start and end didn't change
+		int prefix = 0;
+		while (prefix < maxShared && oldContents.charAt(prefix) == newContents.charAt(prefix)) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < maxShared - prefix
+				&& oldContents.charAt(oldContents.length() - 1 - suffix) == newContents.charAt(newContents.length() - 1 - suffix)) {
+			suffix++;
+		}
+		// Never split an emoji (or any other surrogate pair) in half
+		if (prefix > 0 && Character.isHighSurrogate(oldContents.charAt(prefix - 1))) {
+			prefix--;
+		}
+		if (suffix > 0 && Character.isLowSurrogate(oldContents.charAt(oldContents.length() - suffix))) {
+			suffix--;
+		}
+
+		return new JSONObject()
+				.put("at", prefix)
+				.put("cut", oldContents.length() - prefix - suffix)
+				.put("text", newContents.substring(prefix, newContents.length() - suffix));
+	}
+
+	private static String applyDelta(String contents, JSONObject delta) {
+		int at = Math.clamp(delta.optInt("at", 0), 0, contents.length());
+		int cutEnd = Math.clamp(at + (long) delta.optInt("cut", 0), at, contents.length());
+		return contents.substring(0, at) + delta.optString("text", "") + contents.substring(cutEnd);
+	}
+
+	private MessageEditHistory() {
+	}
+}
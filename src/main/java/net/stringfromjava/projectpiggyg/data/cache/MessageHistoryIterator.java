@@ -0,0 +1,141 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageHistory;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily walks the message history of a channel one page at a time.
+ * <p>
+ * A page is only requested from Discord once the previous one has been used, and nothing
+ * holds on to pages that were already returned. So no matter how many messages a channel
+ * has, only a single page of them is ever kept in memory.
+ */
+public final class MessageHistoryIterator implements Iterator<List<Message>> {
+
+	/**
+	 * The most messages Discord allows in a single page of history.
+	 */
+	public static final int MAX_PAGE_SIZE = 100;
+
+	private final GuildMessageChannel channel;
+	private final boolean forward;
+	private final int pageSize;
+	private final Runnable beforeRequest;
+	private long cursor;
+	private List<Message> nextPage;
+	private boolean exhausted = false;
+
+	private MessageHistoryIterator(GuildMessageChannel channel, boolean forward, long cursor, int pageSize, Runnable beforeRequest) {
+		this.channel = channel;
+		this.forward = forward;
+		this.cursor = cursor;
+		this.pageSize = Math.clamp(pageSize, 1, MAX_PAGE_SIZE);
+		this.beforeRequest = beforeRequest;
+	}
+
+	/**
+	 * Walks back in time through a channel's history, starting from the newest message.
+	 *
+	 * @param channel The channel to walk through.
+	 * @return An iterator of pages, from newest to oldest.
+	 */
+	@NotNull
+	public static MessageHistoryIterator fromNewest(@NotNull GuildMessageChannel channel) {
+		return before(channel, 0, MAX_PAGE_SIZE, () -> {});
+	}
+
+	/**
+	 * Walks back in time through a channel's history, starting right before a message.
+	 *
+	 * @param channel       The channel to walk through.
+	 * @param messageId     The ID of the message to start before, or {@code 0} to start from the newest message.
+	 * @param pageSize      How many messages to get per page (at most {@value #MAX_PAGE_SIZE}).
+	 * @param beforeRequest Ran right before each page is requested, such as for rate limiting.
+	 * @return An iterator of pages, from newest to oldest.
+	 */
+	@NotNull
+	public static MessageHistoryIterator before(@NotNull GuildMessageChannel channel, long messageId, int pageSize, @NotNull Runnable beforeRequest) {
+		return new MessageHistoryIterator(channel, false, messageId, pageSize, beforeRequest);
+	}
+
+	/**
+	 * Walks forward in time through a channel's history, starting right after a message.
+	 *
+	 * @param channel       The channel to walk through.
+	 * @param messageId     The ID of the message to start after, or {@code 0} to start from the very first message.
+	 * @param pageSize      How many messages to get per page (at most {@value #MAX_PAGE_SIZE}).
+	 * @param beforeRequest Ran right before each page is requested, such as for rate limiting.
+	 * @return An iterator of pages, from oldest to newest.
+	 */
+	@NotNull
+	public static MessageHistoryIterator after(@NotNull GuildMessageChannel channel, long messageId, int pageSize, @NotNull Runnable beforeRequest) {
+		return new MessageHistoryIterator(channel, true, messageId, pageSize, beforeRequest);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextPage == null && !exhausted) {
+			nextPage = fetchPage();
+			// A page that isn't full means the end of the history was reached
+			exhausted = nextPage.size() < pageSize;
+			if (nextPage.isEmpty()) {
+				nextPage = null;
+			}
+		}
+		return nextPage != null;
+	}
+
+	@Override
+	public List<Message> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		List<Message> page = nextPage;
+		nextPage = null;
+		return page;
+	}
+
+	/**
+	 * Lazily streams every message this iterator walks through, one page at a time.
+	 *
+	 * @return A {@link java.util.stream.Stream} of every message.
+	 */
+	@NotNull
+	public Stream<Message> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.flatMap(List::stream);
+	}
+
+	private List<Message> fetchPage() {
+		beforeRequest.run();
+		List<Message> page;
+		if (forward) {
+			page = MessageHistory.getHistoryAfter(channel, Long.toString(cursor))
+					.limit(pageSize)
+					.complete()
+					.getRetrievedHistory();
+			cursor = page.stream().mapToLong(Message::getIdLong).max().orElse(cursor);
+		} else {
+			// A new history is made for every page, since a single MessageHistory
+			// keeps every message it has ever retrieved in memory
+			page = (cursor == 0)
+					? channel.getHistory().retrievePast(pageSize).complete()
+					: MessageHistory.getHistoryBefore(channel, Long.toString(cursor))
+							.limit(pageSize)
+							.complete()
+							.getRetrievedHistory();
+			cursor = page.stream().mapToLong(Message::getIdLong).min().orElse(cursor);
+		}
+		return page;
+	}
+}
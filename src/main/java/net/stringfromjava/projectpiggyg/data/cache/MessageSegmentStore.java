@@ -0,0 +1,793 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import net.dv8tion.jda.api.utils.TimeUtil;
+import net.stringfromjava.projectpiggyg.data.collection.LongLongMap;
+import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.util.app.AppUtil;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import net.stringfromjava.projectpiggyg.util.data.FileUtil;
+import net.stringfromjava.projectpiggyg.util.data.PathUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Storage for the cached messages of a single channel.
+ * <p>
+ * Instead of one folder and one {@code message.json} file per message, messages are packed
+ * one after another into fixed-size segment files that are memory-mapped. Each record looks like this:
+ * <pre>
+ * [int length][long message ID][length bytes of compact JSON]
+ * </pre>
+ * A length of {@code 0} marks the end of the records in a segment. The length is always written
+ * last, so a record that was cut off by PiggyG crashing is simply never seen. That doesn't hold if
+ * the whole system goes down (like from a power loss), since the operating system can write the
+ * pages of a segment back to the disk in any order. Records written since the segments were last
+ * forced (when a backfill checkpoint is saved, or when the store is closed) can then be garbage,
+ * and any that can't be read are skipped.
+ * <p>
+ * Stores are kept open (with every segment mapped) until their guild is left or PiggyG stops,
+ * so each channel that has been used takes up to {@code message_segments_per_channel} memory
+ * maps. The operating system's limit on maps (like {@code vm.max_map_count} on Linux) has to
+ * be high enough for every channel PiggyG caches.
+ * <p>
+ * An in-memory index maps every message ID (snowflake) to the segment and offset of its newest
+ * record. It gets rebuilt by scanning the segments when the store is opened. Storing a message
+ * that is already stored adds a newer record, which the index then points to instead.
+ * <p>
+ * Each record owns a reference to every attachment blob it lists. Once a channel has more
+ * segments than allowed, the oldest segment is evicted, which releases the references of
+ * every record inside it. Deleted messages don't need the cache to stick around, since they're
+ * copied into the deleted message logs when they get deleted.
+ * <p>
+ * The newest messages are also kept in a {@link RecentMessageCache}, since most messages that
+ * get deleted or edited are only a few minutes old, so looking them up doesn't touch the segments.
+ * <p>
+ * Every store also keeps a {@link MessageBloomFilter} of its message IDs, which is saved whenever a
+ * new segment is started and when the store is closed, and loaded again when the store is opened
+ * (with only the messages stored after it was saved added to it). This lets
+ * {@link #mightContain(String, String, long)} rule out messages that were never cached without
+ * opening the store, or even touching the disk once the filter has been loaded. A saved filter
+ * that's missing messages (like after a crash) is never used without opening the store.
+ */
+public final class MessageSegmentStore {
+
+	private static final Map<String, MessageSegmentStore> openStores = new ConcurrentHashMap<>();
+	private static final Map<String, MessageBloomFilter> closedStoreFilters = new ConcurrentHashMap<>();
+
+	private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+	private static final long NO_LOCATION = -1;
+	// Only messages sent within this long are put into the recent message cache,
+	// so backfilling old history doesn't push out the messages people are talking about
+	private static final long RECENT_MESSAGE_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private final String guildId;
+	private final Path segmentsPath;
+	private final Path checkpointPath;
+	private final Path bloomFilterPath;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+	private final LongLongMap index = new LongLongMap();
+	private final RecentMessageCache recentMessages;
+	private MessageBloomFilter bloomFilter;
+	private int firstSegment;
+	private int writePosition;
+
+	/**
+	 * Visits a single record inside a segment.
+	 */
+	@FunctionalInterface
+	private interface RecordVisitor {
+		void visit(int offset, long messageId);
+	}
+
+	private MessageSegmentStore(String guildId, String channelId) {
+		this.guildId = guildId;
+		segmentsPath = Paths.get(PathUtil.fromGuildBlobCache(
+				guildId,
+				Constants.System.GUILD_BLOB_CACHE_CHANNELS_FOLDER_NAME,
+				channelId,
+				Constants.System.GUILD_BLOB_CACHE_SEGMENTS_FOLDER_NAME
+		));
+		checkpointPath = segmentsPath.resolveSibling(Constants.System.GUILD_BLOB_CACHE_BACKFILL_CHECKPOINT_FILE_NAME);
+		bloomFilterPath = segmentsPath.resolveSibling(Constants.System.GUILD_BLOB_CACHE_BLOOM_FILTER_FILE_NAME);
+		segmentSize = (int) Math.clamp(
+				AppUtil.getConfigLong("message_segment_bytes", 8L * 1024 * 1024),
+				64L * 1024,
+				Integer.MAX_VALUE
+		);
+		maxSegments = Math.clamp(AppUtil.getConfigLong("message_segments_per_channel", 16), 0, Integer.MAX_VALUE);
+		recentMessages = new RecentMessageCache(
+				Math.max(AppUtil.getConfigLong("recent_message_cache_bytes", 256L * 1024), 0),
+				AppUtil.conditionalEnabled(Constants.Conditionals.OFF_HEAP_MESSAGE_CACHE)
+		);
+		PathUtil.ensurePathExists(segmentsPath.toString(), false, false);
+		loadSegments();
+
+		// The index is checked instead of the filter while the store is open
+		closedStoreFilters.remove(storeKey(guildId, channelId));
+		loadBloomFilter();
+	}
+
+	/**
+	 * Gets (or opens) the message store of a channel.
+	 *
+	 * @param guildId   The ID of the guild the channel is in.
+	 * @param channelId The ID of the channel.
+	 * @return The channel's message store.
+	 */
+	@NotNull
+	public static MessageSegmentStore of(String guildId, String channelId) {
+		return openStores.computeIfAbsent(storeKey(guildId, channelId), k -> new MessageSegmentStore(guildId, channelId));
+	}
+
+	/**
+	 * Checks if a message might be cached, without opening the channel's message store unless it
+	 * has to. If the store is open, then its index is checked. Otherwise, the store's saved Bloom
+	 * filter is checked first, and the store is only opened if the filter says the message might be there.
+	 *
+	 * @param guildId   The ID of the guild the channel is in.
+	 * @param channelId The ID of the channel.
+	 * @param messageId The ID (snowflake) of the message.
+	 * @return {@code false} if the message definitely isn't cached, or {@code true} if it is.
+	 */
+	public static boolean mightContain(String guildId, String channelId, long messageId) {
+		String key = storeKey(guildId, channelId);
+		MessageSegmentStore store = openStores.get(key);
+		if (store != null) {
+			return store.contains(messageId);
+		}
+		MessageBloomFilter filter = closedStoreFilters.computeIfAbsent(key, k -> loadClosedStoreFilter(guildId, channelId));
+		if (filter != null && !filter.mightContain(messageId)) {
+			return false;
+		}
+		return of(guildId, channelId).contains(messageId);
+	}
+
+	/**
+	 * Gets a cached message without opening the channel's message store unless it might be
+	 * there (see {@link #mightContain(String, String, long)}). Use this instead of
+	 * {@link #of(String, String)} for lookups of messages that may never have been cached, since
+	 * opening a store creates its folders and maps its segments for as long as PiggyG runs.
+	 *
+	 * @param guildId   The ID of the guild the channel is in.
+	 * @param channelId The ID of the channel.
+	 * @param messageId The ID (snowflake) of the message.
+	 * @return The message's info, or {@code null} if it isn't cached.
+	 */
+	@Nullable
+	public static JSONObject getIfCached(String guildId, String channelId, long messageId) {
+		return mightContain(guildId, channelId, messageId) ? of(guildId, channelId).get(messageId) : null;
+	}
+
+	/**
+	 * Changes a cached message the same way as {@link #update(long, Predicate)}, without opening
+	 * the channel's message store unless the message might be there (see {@link #getIfCached}).
+	 *
+	 * @param guildId   The ID of the guild the channel is in.
+	 * @param channelId The ID of the channel.
+	 * @param messageId The ID (snowflake) of the message.
+	 * @param change    Changes the message's info, and returns if anything was changed.
+	 * @return If the message is cached.
+	 */
+	public static boolean updateIfCached(String guildId, String channelId, long messageId, @NotNull Predicate<JSONObject> change) {
+		return mightContain(guildId, channelId, messageId) && of(guildId, channelId).update(messageId, change);
+	}
+
+	/**
+	 * Syncs and closes every message store that belongs to a guild.
+	 *
+	 * @param guildId The ID of the guild.
+	 */
+	public static void closeGuild(String guildId) {
+		closedStoreFilters.keySet().removeIf(key -> key.startsWith(STR."\{guildId}/"));
+		openStores.values().removeIf(store -> {
+			if (store.guildId.equals(guildId)) {
+				store.close();
+				return true;
+			}
+			return false;
+		});
+	}
+
+	/**
+	 * Adds together the stats of the recent message cache of every message store that is currently open.
+	 *
+	 * @return The stats of every recent message cache.
+	 */
+	@NotNull
+	public static RecentMessageCache.Stats getRecentCacheStats() {
+		RecentMessageCache.Stats total = new RecentMessageCache.Stats(0, 0, 0, 0, 0);
+		for (MessageSegmentStore store : openStores.values()) {
+			synchronized (store) {
+				total = total.plus(store.recentMessages.getStats());
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Syncs and closes every message store that is currently open.
+	 */
+	public static void closeAll() {
+		openStores.values().forEach(MessageSegmentStore::close);
+		openStores.clear();
+	}
+
+	/**
+	 * Stores a message. If the message was already stored, the new record replaces it.
+	 * <p>
+	 * NOTE: The new record takes over a reference to every blob inside its
+	 * {@code attachment-blobs}, so the caller must have added a reference for each one.
+	 *
+	 * @param messageId The ID (snowflake) of the message.
+	 * @param message   The message's info, usually from
+	 *                  {@link net.stringfromjava.projectpiggyg.util.data.JsonUtil#createMessageJson}.
+	 */
+	public synchronized void put(long messageId, @NotNull JSONObject message) {
+		String json = message.toString();
+		byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+		int recordSize = RECORD_HEADER_SIZE + payload.length;
+		if (recordSize > segmentSize) {
+			LoggerUtil.log(
+					LogCategory.CACHE,
+					LogType.WARN,
+					() -> STR."Message \{messageId} is too big (\{recordSize} bytes) to fit inside a message segment! Skipping..."
+			);
+			return;
+		}
+
+		// Start a new segment if the current one is full
+		if (segments.isEmpty() || writePosition + recordSize > segmentSize) {
+			segments.add(mapSegment(firstSegment + segments.size()));
+			writePosition = 0;
+			evictOldSegments();
+			saveBloomFilter();
+		}
+
+		MappedByteBuffer segment = segments.getLast();
+		segment.putLong(writePosition + Integer.BYTES, messageId);
+		segment.put(writePosition + RECORD_HEADER_SIZE, payload);
+		// The length goes last, since it's what marks the record as complete
+		segment.putInt(writePosition, payload.length);
+		index.put(messageId, location(firstSegment + segments.size() - 1, writePosition));
+		writePosition += recordSize;
+		bloomFilter.add(messageId);
+		if (bloomFilter.isFull()) {
+			rebuildBloomFilter();
+		}
+
+		if (System.currentTimeMillis() - TimeUtil.getTimeCreated(messageId).toInstant().toEpochMilli() <= RECENT_MESSAGE_MAX_AGE_MILLIS) {
+			recentMessages.put(messageId, json);
+		} else {
+			// Don't leave an older version of the message behind
+			recentMessages.remove(messageId);
+		}
+	}
+
+	/**
+	 * Gets a stored message.
+	 *
+	 * @param messageId The ID (snowflake) of the message.
+	 * @return The message's info, or {@code null} if it isn't stored.
+	 */
+	@Nullable
+	public synchronized JSONObject get(long messageId) {
+		// A new object is made every time, since the caller is free to change it
+		String recentJson = recentMessages.get(messageId);
+		if (recentJson != null) {
+			return new JSONObject(recentJson);
+		}
+		return readNewestRecord(messageId);
+	}
+
+	/**
+	 * Changes the newest record of a stored message and stores it again.
+	 * The same rules apply as {@link #put(long, JSONObject)}.
+	 *
+	 * @param messageId The ID (snowflake) of the message.
+	 * @param change    Changes the message's info, and returns if anything was changed.
+	 *                  The message is only stored again if it was.
+	 * @return If the message is stored.
+	 */
+	public synchronized boolean update(long messageId, @NotNull Predicate<JSONObject> change) {
+		JSONObject message = get(messageId);
+		if (message == null) {
+			return false;
+		}
+		if (change.test(message)) {
+			put(messageId, message);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if a message is stored.
+	 *
+	 * @param messageId The ID (snowflake) of the message.
+	 * @return If the message is stored.
+	 */
+	public synchronized boolean contains(long messageId) {
+		return index.containsKey(messageId);
+	}
+
+	/**
+	 * Runs an action for the newest record of every stored message.
+	 *
+	 * @param action The action to run for each message.
+	 */
+	public synchronized void forEach(@NotNull Consumer<JSONObject> action) {
+		for (long messageId : index.keys()) {
+			// This skips the recent message cache, so walking every
+			// message doesn't count as every message being looked up
+			JSONObject message = readNewestRecord(messageId);
+			if (message != null) {
+				action.accept(message);
+			}
+		}
+	}
+
+	/**
+	 * Runs an action for every record inside the segments, including the older records
+	 * of messages that were stored again, from oldest to newest. Since every record owns
+	 * its own references to attachment blobs, this is what should be used to release them.
+	 *
+	 * @param action The action to run for each record.
+	 */
+	public synchronized void forEachRecord(@NotNull Consumer<JSONObject> action) {
+		for (MappedByteBuffer segment : segments) {
+			walkSegment(segment, 0, (offset, messageId) -> {
+				JSONObject message = readRecord(segment, offset, messageId);
+				if (message != null) {
+					action.accept(message);
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return How many different messages are stored.
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Moves every message from the old layout (one folder with a {@code message.json}
+	 * file per message) into {@code this} store. The attachments of each message are
+	 * moved into the {@link AttachmentBlobStore}, and the old folders are then deleted.
+	 *
+	 * @return How many messages were moved.
+	 */
+	public int importLegacyMessages() {
+		Path channelPath = segmentsPath.getParent();
+		int imported = 0;
+		File legacyFolder = channelPath.resolve(Constants.System.GUILD_BLOB_CACHE_MESSAGES_FOLDER_NAME).toFile();
+		File[] messageFolders = legacyFolder.listFiles(File::isDirectory);
+		if (messageFolders != null) {
+			for (File messageFolder : messageFolders) {
+				if (importLegacyMessage(messageFolder)) {
+					imported++;
+				}
+			}
+			PathUtil.deleteFolder(legacyFolder.getPath());
+		}
+
+		// Attachments that were saved per message, without the message itself
+		File attachmentsFolder = channelPath.resolve(Constants.System.GUILD_BLOB_CACHE_MESSAGES_ATTACHMENT_FOLDER_NAME).toFile();
+		File[] attachmentFolders = attachmentsFolder.listFiles(File::isDirectory);
+		if (attachmentFolders != null) {
+			for (File attachmentFolder : attachmentFolders) {
+				importLegacyMessage(attachmentFolder);
+			}
+			PathUtil.deleteFolder(attachmentsFolder.getPath());
+		}
+
+		force();
+		return imported;
+	}
+
+	/**
+	 * Moves a single message folder from the old layout into {@code this} store.
+	 *
+	 * @return If a message record that wasn't stored before was added.
+	 */
+	private boolean importLegacyMessage(File messageFolder) {
+		long messageId;
+		try {
+			messageId = Long.parseLong(messageFolder.getName());
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		File[] files = messageFolder.listFiles(File::isFile);
+		if (files == null) {
+			return false;
+		}
+
+		JSONObject message = get(messageId);
+		boolean isNew = (message == null);
+		JSONArray attachmentBlobs = new JSONArray();
+		for (File file : files) {
+			if (file.getName().equals("message.json")) {
+				try {
+					if (isNew) {
+						message = new JSONObject(FileUtil.getFileData(file));
+					}
+				} catch (JSONException e) {
+					LoggerUtil.log(
+							LogCategory.CACHE,
+							LogType.WARN,
+							() -> STR."Found a corrupted message file '\{file.getPath()}'. Skipping..."
+					);
+				}
+				continue;
+			}
+			// Anything else inside the folder is an attachment
+			try (InputStream in = Files.newInputStream(file.toPath())) {
+				attachmentBlobs.put(new JSONObject()
+						.put("name", file.getName())
+						.put("sha256", AttachmentBlobStore.store(in)));
+			} catch (IOException e) {
+				LoggerUtil.log(
+						LogCategory.CACHE,
+						LogType.WARN,
+						() -> STR."Failed to move attachment '\{file.getPath()}' out of the old message cache."
+				);
+			}
+		}
+
+		JSONObject messageInfo = (message != null) ? message.optJSONObject("message") : null;
+		if (messageInfo == null) {
+			// There's no message left to point at the attachments
+			AttachmentBlobStore.releaseBlobs(attachmentBlobs);
+			return false;
+		}
+		if (!attachmentBlobs.isEmpty()) {
+			JSONArray existingBlobs = messageInfo.optJSONArray("attachment-blobs", new JSONArray());
+			if (!isNew) {
+				// The new record needs its own reference to the blobs the old record had
+				AttachmentBlobStore.acquireBlobs(existingBlobs);
+			}
+			attachmentBlobs.forEach(existingBlobs::put);
+			messageInfo.put("attachment-blobs", existingBlobs);
+		}
+		if (isNew || !attachmentBlobs.isEmpty()) {
+			put(messageId, message);
+		}
+		return isNew;
+	}
+
+	/**
+	 * Gets how far the message history of {@code this} channel has been cached.
+	 *
+	 * @return The checkpoint, or {@code null} if the history has never been cached.
+	 */
+	@Nullable
+	public BackfillCheckpoint getCheckpoint() {
+		File checkpointFile = checkpointPath.toFile();
+		if (!checkpointFile.isFile()) {
+			return null;
+		}
+		try {
+			return BackfillCheckpoint.fromJson(new JSONObject(FileUtil.getFileData(checkpointFile)));
+		} catch (JSONException e) {
+			LoggerUtil.log(
+					LogCategory.CACHE,
+					LogType.WARN,
+					() -> STR."The backfill checkpoint '\{checkpointPath}' is corrupted! Caching the channel's history again..."
+			);
+			return null;
+		}
+	}
+
+	/**
+	 * Saves how far the message history of {@code this} channel has been cached. Every
+	 * segment is synced first, so the checkpoint never gets ahead of the messages it covers.
+	 *
+	 * @param checkpoint The new checkpoint.
+	 */
+	public void saveCheckpoint(@NotNull BackfillCheckpoint checkpoint) {
+		force();
+		try {
+			// Write to a temporary file first so a crash
+			// can never leave behind half of a checkpoint
+			Path tempPath = checkpointPath.resolveSibling(STR."\{checkpointPath.getFileName()}.tmp");
+			Files.writeString(tempPath, checkpoint.toJson().toString());
+			Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LoggerUtil.log(
+					LogCategory.CACHE,
+					LogType.WARN,
+					() -> STR."Failed to save the backfill checkpoint '\{checkpointPath}', got this error message: '\{e.getMessage()}'"
+			);
+		}
+	}
+
+	/**
+	 * Forces every segment's changes onto the disk.
+	 */
+	public synchronized void force() {
+		segments.forEach(MappedByteBuffer::force);
+	}
+
+	private synchronized void close() {
+		force();
+		saveBloomFilter();
+		// Give back any memory the recent messages took up off the heap
+		recentMessages.clear();
+	}
+
+	/**
+	 * Builds the Bloom filter again from the index, with enough room for the store to double in size.
+	 * This also drops every message that was evicted since the filter was last built.
+	 */
+	private void rebuildBloomFilter() {
+		int capacity = (int) Math.min(index.size() * 2L, Integer.MAX_VALUE);
+		if (bloomFilter != null) {
+			capacity = Math.max(capacity, bloomFilter.getCapacity());
+		}
+		MessageBloomFilter rebuilt = MessageBloomFilter.create(capacity);
+		index.forEach((messageId, location) -> rebuilt.add(messageId));
+		bloomFilter = rebuilt;
+	}
+
+	/**
+	 * Loads the saved Bloom filter, and adds every message that was stored after it was saved. If
+	 * there isn't a saved filter (or it doesn't line up with the segments anymore), then it's built again.
+	 */
+	private void loadBloomFilter() {
+		MessageBloomFilter saved = MessageBloomFilter.read(bloomFilterPath);
+		long end = endLocation();
+		if (saved != null && saved.getCoveredUntil() == end) {
+			bloomFilter = saved;
+			return;
+		}
+
+		int coveredSegment = (saved != null) ? (int) (saved.getCoveredUntil() >>> 32) : -1;
+		if (saved == null || coveredSegment < firstSegment || saved.getCoveredUntil() > end) {
+			rebuildBloomFilter();
+		} else {
+			bloomFilter = saved;
+			for (int segmentNumber = coveredSegment; segmentNumber < firstSegment + segments.size(); segmentNumber++) {
+				int start = (segmentNumber == coveredSegment) ? (int) saved.getCoveredUntil() : 0;
+				walkSegment(segments.get(segmentNumber - firstSegment), start, (offset, messageId) -> bloomFilter.add(messageId));
+			}
+			if (bloomFilter.isFull()) {
+				rebuildBloomFilter();
+			}
+		}
+		saveBloomFilter();
+	}
+
+	private void saveBloomFilter() {
+		try {
+			bloomFilter.write(bloomFilterPath, endLocation());
+		} catch (IOException e) {
+			LoggerUtil.log(
+					LogCategory.CACHE,
+					LogType.WARN,
+					() -> STR."Failed to save the Bloom filter '\{bloomFilterPath}', got this error message: '\{e.getMessage()}'"
+			);
+		}
+	}
+
+	/**
+	 * @return The location right after the last record of the newest segment.
+	 */
+	private long endLocation() {
+		return segments.isEmpty() ? location(firstSegment, 0) : location(firstSegment + segments.size() - 1, writePosition);
+	}
+
+	@Nullable
+	private static MessageBloomFilter loadClosedStoreFilter(String guildId, String channelId) {
+		Path channelPath = Paths.get(PathUtil.fromGuildBlobCache(
+				guildId,
+				Constants.System.GUILD_BLOB_CACHE_CHANNELS_FOLDER_NAME,
+				channelId
+		));
+		// Nothing was ever cached in the channel, so nothing needs to be opened to know that
+		if (!Files.isDirectory(channelPath)) {
+			return MessageBloomFilter.create(0);
+		}
+		MessageBloomFilter filter = MessageBloomFilter.read(channelPath.resolve(Constants.System.GUILD_BLOB_CACHE_BLOOM_FILTER_FILE_NAME));
+		// A filter that's missing messages can't rule anything out, so the store has to be opened
+		if (filter == null || !isEndOfSegments(channelPath.resolve(Constants.System.GUILD_BLOB_CACHE_SEGMENTS_FOLDER_NAME), filter.getCoveredUntil())) {
+			return null;
+		}
+		return filter;
+	}
+
+	/**
+	 * Checks if nothing was stored after a location inside a closed store, without mapping its segments.
+	 */
+	private static boolean isEndOfSegments(Path segmentsPath, long location) {
+		int segmentNumber = (int) (location >>> 32);
+		int offset = (int) location;
+		// A newer segment means more messages were stored after the location
+		if (Files.exists(segmentsPath.resolve(segmentFileName(segmentNumber + 1)))) {
+			return false;
+		}
+		Path segmentPath = segmentsPath.resolve(segmentFileName(segmentNumber));
+		if (!Files.isRegularFile(segmentPath)) {
+			// Only a store that never had anything stored has no segments
+			return location == 0;
+		}
+		try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+			if (offset + RECORD_HEADER_SIZE > channel.size()) {
+				return true;
+			}
+			ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+			return channel.read(length, offset) == Integer.BYTES && length.getInt(0) <= 0;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static String storeKey(String guildId, String channelId) {
+		return STR."\{guildId}/\{channelId}";
+	}
+
+	private void loadSegments() {
+		File[] segmentFiles = segmentsPath.toFile().listFiles((dir, name) -> name.endsWith(".seg"));
+		if (segmentFiles == null || segmentFiles.length == 0) {
+			return;
+		}
+		// Segments are numbered in order, and evicting the oldest
+		// ones means the numbers don't always start at 0
+		int lastSegment = 0;
+		firstSegment = Integer.MAX_VALUE;
+		for (File segmentFile : segmentFiles) {
+			try {
+				int segmentNumber = Integer.parseInt(segmentFile.getName().substring(0, segmentFile.getName().length() - ".seg".length()));
+				firstSegment = Math.min(firstSegment, segmentNumber);
+				lastSegment = Math.max(lastSegment, segmentNumber);
+			} catch (NumberFormatException e) {
+				LoggerUtil.log(
+						LogCategory.CACHE,
+						LogType.WARN,
+						() -> STR."Found an unknown file '\{segmentFile.getPath()}' inside a message store. Skipping..."
+				);
+			}
+		}
+		if (firstSegment == Integer.MAX_VALUE) {
+			firstSegment = 0;
+			return;
+		}
+		for (int segmentNumber = firstSegment; segmentNumber <= lastSegment; segmentNumber++) {
+			MappedByteBuffer segment = mapSegment(segmentNumber);
+			segments.add(segment);
+			int number = segmentNumber;
+			writePosition = walkSegment(segment, 0, (offset, messageId) -> index.put(messageId, location(number, offset)));
+		}
+	}
+
+	/**
+	 * Evicts the oldest segments until there are no more than {@code maxSegments} of them.
+	 */
+	private void evictOldSegments() {
+		while (maxSegments > 0 && segments.size() > maxSegments) {
+			MappedByteBuffer segment = segments.removeFirst();
+			int segmentNumber = firstSegment++;
+			int[] evicted = {0};
+			walkSegment(segment, 0, (offset, messageId) -> {
+				JSONObject message = readRecord(segment, offset, messageId);
+				if (message != null) {
+					AttachmentBlobStore.releaseMessageBlobs(message);
+				}
+				// Older records of the message may have been replaced by newer ones
+				if (index.get(messageId, NO_LOCATION) == location(segmentNumber, offset)) {
+					index.remove(messageId);
+					recentMessages.remove(messageId);
+					evicted[0]++;
+				}
+			});
+
+			Path segmentPath = segmentPathOf(segmentNumber);
+			try {
+				Files.deleteIfExists(segmentPath);
+			} catch (IOException e) {
+				LoggerUtil.log(
+						LogCategory.CACHE,
+						LogType.WARN,
+						() -> STR."Failed to delete evicted message segment '\{segmentPath}', got this error message: '\{e.getMessage()}'"
+				);
+			}
+			LoggerUtil.log(
+					LogCategory.CACHE,
+					LogType.INFO,
+					() -> STR."Evicted \{evicted[0]} cached message\{evicted[0] != 1 ? "s" : ""} from message segment '\{segmentPath}'."
+			);
+		}
+	}
+
+	/**
+	 * Visits every complete record of a segment that starts at or after an offset, from oldest to newest.
+	 *
+	 * @return The offset right after the last complete record.
+	 */
+	private int walkSegment(MappedByteBuffer segment, int start, RecordVisitor visitor) {
+		int position = start;
+		while (position + RECORD_HEADER_SIZE <= segmentSize) {
+			int length = segment.getInt(position);
+			if (length <= 0 || position + RECORD_HEADER_SIZE + length > segmentSize) {
+				break;
+			}
+			visitor.visit(position, segment.getLong(position + Integer.BYTES));
+			position += RECORD_HEADER_SIZE + length;
+		}
+		return position;
+	}
+
+	@Nullable
+	private JSONObject readNewestRecord(long messageId) {
+		long location = index.get(messageId, NO_LOCATION);
+		if (location == NO_LOCATION) {
+			return null;
+		}
+		return readRecord(segments.get((int) (location >>> 32) - firstSegment), (int) location, messageId);
+	}
+
+	@Nullable
+	private JSONObject readRecord(MappedByteBuffer segment, int offset, long messageId) {
+		byte[] payload = new byte[segment.getInt(offset)];
+		segment.get(offset + RECORD_HEADER_SIZE, payload);
+		try {
+			return new JSONObject(new String(payload, StandardCharsets.UTF_8));
+		} catch (JSONException e) {
+			LoggerUtil.log(
+					LogCategory.CACHE,
+					LogType.WARN,
+					() -> STR."Found a corrupted record for message \{messageId} inside '\{segmentsPath}'."
+			);
+			return null;
+		}
+	}
+
+	private Path segmentPathOf(int segmentNumber) {
+		return segmentsPath.resolve(segmentFileName(segmentNumber));
+	}
+
+	private static String segmentFileName(int segmentNumber) {
+		return STR."\{String.format("%08d", segmentNumber)}.seg";
+	}
+
+	private MappedByteBuffer mapSegment(int segmentNumber) {
+		Path segmentPath = segmentPathOf(segmentNumber);
+		try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// Mapping past the end of the file grows it to the full segment size
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException(STR."Failed to map message segment '\{segmentPath}'!", e);
+		}
+	}
+
+	private static long location(int segmentNumber, int offset) {
+		return ((long) segmentNumber << 32) | (offset & 0xFFFFFFFFL);
+	}
+}
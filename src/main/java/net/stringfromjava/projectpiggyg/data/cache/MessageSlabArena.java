@@ -0,0 +1,162 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A slab allocator for keeping cached message JSON outside the Java heap, which is
+ * shared by the {@link RecentMessageCache} of every channel.
+ * <p>
+ * Memory is taken from the OS in 1 MiB slabs, and each slab only holds chunks of a single size
+ * (from 256 bytes up to 64 KiB, doubling each time). A message is copied into the smallest chunk
+ * it fits in, and freed chunks go onto a free list to be reused by the next message of that size.
+ * Since the garbage collector never sees any of this memory, how many messages are cached has no
+ * effect on how long GC pauses take. Slabs are never given back, so the memory used is always
+ * whatever the caches needed at their busiest.
+ * <p>
+ * Each chunk starts with the length of the message inside it, and a chunk is referred to by a
+ * handle, which packs the chunk's size class into the top byte and its number into the rest.
+ */
+final class MessageSlabArena {
+
+	/**
+	 * The handle returned when a message is too big to fit inside any chunk.
+	 */
+	static final long NO_HANDLE = -1;
+
+	private static final int SLAB_BYTES = 1024 * 1024;
+	private static final int SMALLEST_CHUNK_SHIFT = 8; // 256 bytes
+	private static final int SIZE_CLASSES = 9; // Up to 64 KiB
+	private static final int LENGTH_HEADER_SIZE = Integer.BYTES;
+
+	// Slabs live for as long as PiggyG does, since they're reused instead of freed
+	private static final Arena arena = Arena.global();
+	private static final SizeClass[] sizeClasses = new SizeClass[SIZE_CLASSES];
+
+	static {
+		for (int i = 0; i < SIZE_CLASSES; i++) {
+			sizeClasses[i] = new SizeClass(1 << (SMALLEST_CHUNK_SHIFT + i));
+		}
+	}
+
+	/**
+	 * Copies a message into a free chunk.
+	 *
+	 * @param bytes The message's UTF-8 bytes.
+	 * @return The chunk's handle, or {@link #NO_HANDLE} if the message is too big.
+	 */
+	static long allocate(@NotNull byte[] bytes) {
+		int classIndex = sizeClassFor(bytes.length + LENGTH_HEADER_SIZE);
+		if (classIndex < 0) {
+			return NO_HANDLE;
+		}
+		SizeClass sizeClass = sizeClasses[classIndex];
+		int chunk = sizeClass.take();
+		MemorySegment chunkSegment = sizeClass.chunkSegment(chunk);
+		chunkSegment.set(ValueLayout.JAVA_INT_UNALIGNED, 0, bytes.length);
+		MemorySegment.copy(MemorySegment.ofArray(bytes), 0, chunkSegment, LENGTH_HEADER_SIZE, bytes.length);
+		return ((long) classIndex << 56) | chunk;
+	}
+
+	/**
+	 * Gets how big the chunk a message would be copied into is, which is how much
+	 * memory the message actually takes up once it's allocated.
+	 *
+	 * @param length How many UTF-8 bytes the message is.
+	 * @return The size (in bytes) of the chunk, or {@code -1} if the message is too big.
+	 */
+	static int chunkSizeFor(int length) {
+		int classIndex = sizeClassFor(length + LENGTH_HEADER_SIZE);
+		return (classIndex >= 0) ? sizeClasses[classIndex].chunkSize : -1;
+	}
+
+	/**
+	 * Copies a message back out of its chunk.
+	 *
+	 * @param handle The chunk's handle, from {@link #allocate(byte[])}.
+	 * @return The message's UTF-8 bytes.
+	 */
+	@NotNull
+	static byte[] read(long handle) {
+		MemorySegment chunkSegment = sizeClasses[classIndexOf(handle)].chunkSegment(chunkOf(handle));
+		int length = chunkSegment.get(ValueLayout.JAVA_INT_UNALIGNED, 0);
+		return chunkSegment.asSlice(LENGTH_HEADER_SIZE, length).toArray(ValueLayout.JAVA_BYTE);
+	}
+
+	/**
+	 * Gives a chunk back, so it can be reused by another message.
+	 * The handle must not be used again after this.
+	 *
+	 * @param handle The chunk's handle, from {@link #allocate(byte[])}.
+	 */
+	static void free(long handle) {
+		sizeClasses[classIndexOf(handle)].give(chunkOf(handle));
+	}
+
+	private static int sizeClassFor(int size) {
+		for (int i = 0; i < SIZE_CLASSES; i++) {
+			if (size <= sizeClasses[i].chunkSize) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int classIndexOf(long handle) {
+		return (int) (handle >>> 56);
+	}
+
+	private static int chunkOf(long handle) {
+		return (int) handle;
+	}
+
+	/**
+	 * Every slab (and free chunk) that holds chunks of a single size.
+	 */
+	private static final class SizeClass {
+
+		private final int chunkSize;
+		private final int chunksPerSlab;
+		private final List<MemorySegment> slabs = new ArrayList<>();
+		private int[] freeChunks = new int[64];
+		private int freeCount;
+		private int nextUnusedChunk;
+
+		private SizeClass(int chunkSize) {
+			this.chunkSize = chunkSize;
+			this.chunksPerSlab = SLAB_BYTES / chunkSize;
+		}
+
+		private synchronized int take() {
+			if (freeCount > 0) {
+				return freeChunks[--freeCount];
+			}
+			// Only take another slab once every chunk of the last one is in use
+			if (nextUnusedChunk == slabs.size() * chunksPerSlab) {
+				slabs.add(arena.allocate(SLAB_BYTES, Long.BYTES));
+			}
+			return nextUnusedChunk++;
+		}
+
+		private synchronized void give(int chunk) {
+			if (freeCount == freeChunks.length) {
+				int[] grown = new int[freeChunks.length * 2];
+				System.arraycopy(freeChunks, 0, grown, 0, freeCount);
+				freeChunks = grown;
+			}
+			freeChunks[freeCount++] = chunk;
+		}
+
+		private synchronized MemorySegment chunkSegment(int chunk) {
+			return slabs.get(chunk / chunksPerSlab).asSlice((long) (chunk % chunksPerSlab) * chunkSize, chunkSize);
+		}
+	}
+
+	private MessageSlabArena() {
+	}
+}
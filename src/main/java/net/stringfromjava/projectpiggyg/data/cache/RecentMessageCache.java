@@ -0,0 +1,244 @@
+package net.stringfromjava.projectpiggyg.data.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small in-memory cache of a channel's most recently stored messages, so looking
+ * them back up (which is what happens when a message gets deleted or edited a few
+ * minutes after it was sent) doesn't have to read their records from a segment.
+ * <p>
+ * The cache is a segmented LRU that's limited by how many bytes its messages take up. New
+ * messages go into a probation segment, and only move into the protected segment once they're
+ * looked up again. This means a burst of messages that are never looked up (like a backfill or
+ * spam) only ever pushes other probation messages out, while the messages that are actually
+ * being looked up stay cached.
+ * <p>
+ * When the {@code OFF_HEAP_MESSAGE_CACHE} conditional is enabled, the cached JSON is kept in the
+ * {@link MessageSlabArena} instead of on the heap, and only the index of message IDs stays on the heap.
+ * <p>
+ * NOTE: This isn't thread-safe, since the {@link MessageSegmentStore} that owns it already
+ * only lets one thread in at a time.
+ */
+public final class RecentMessageCache {
+
+	/**
+	 * A snapshot of how well a cache (or many caches added together) is doing.
+	 *
+	 * @param hits      How many lookups found their message in the cache.
+	 * @param misses    How many lookups had to go to the message segments.
+	 * @param evictions How many messages were pushed out of the cache to make room.
+	 * @param messages  How many messages are in the cache right now.
+	 * @param bytes     How many bytes the cached messages take up right now.
+	 */
+	public record Stats(long hits, long misses, long evictions, long messages, long bytes) {
+
+		/**
+		 * @return The stats of this and another cache added together.
+		 */
+		@NotNull
+		public Stats plus(@NotNull Stats other) {
+			return new Stats(
+					hits + other.hits,
+					misses + other.misses,
+					evictions + other.evictions,
+					messages + other.messages,
+					bytes + other.bytes
+			);
+		}
+
+		/**
+		 * @return The percentage of lookups that found their message in the cache.
+		 */
+		public double hitRate() {
+			long lookups = hits + misses;
+			return (lookups == 0) ? 0 : hits * 100.0 / lookups;
+		}
+	}
+
+	/**
+	 * A single cached message, which either holds its JSON on the heap or a handle to
+	 * its UTF-8 bytes in the {@link MessageSlabArena}.
+	 */
+	private record CachedMessage(String json, long handle, long weight) {
+
+		private String read() {
+			return (json != null) ? json : new String(MessageSlabArena.read(handle), StandardCharsets.UTF_8);
+		}
+
+		private void free() {
+			if (json == null) {
+				MessageSlabArena.free(handle);
+			}
+		}
+	}
+
+	// Roughly what the map entry and other objects of each
+	// cached message take up on top of the JSON itself
+	private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+	private final long maxBytes;
+	private final long maxProtectedBytes;
+	private final boolean offHeap;
+	// Both are kept in access order, so the first entry is always the least recently used one
+	private final LinkedHashMap<Long, CachedMessage> probation = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<Long, CachedMessage> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+	private long probationBytes;
+	private long protectedBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param maxBytes How many bytes the cached messages can take up. {@code 0} disables the cache.
+	 * @param offHeap  Should the cached messages be kept in the {@link MessageSlabArena}?
+	 */
+	RecentMessageCache(long maxBytes, boolean offHeap) {
+		this.maxBytes = maxBytes;
+		this.offHeap = offHeap;
+		// Most of the space goes to the messages that have proven they get looked up again
+		this.maxProtectedBytes = maxBytes * 4 / 5;
+	}
+
+	/**
+	 * Looks up a cached message.
+	 *
+	 * @param messageId The ID (snowflake) of the message.
+	 * @return The message's JSON, or {@code null} if it isn't cached.
+	 */
+	@Nullable
+	String get(long messageId) {
+		CachedMessage cached = protectedSegment.get(messageId);
+		if (cached != null) {
+			hits++;
+			return cached.read();
+		}
+		cached = probation.remove(messageId);
+		if (cached == null) {
+			misses++;
+			return null;
+		}
+		// Being looked up a second time earns the message a spot in the protected segment
+		hits++;
+		probationBytes -= cached.weight();
+		protectedSegment.put(messageId, cached);
+		protectedBytes += cached.weight();
+		demoteProtected();
+		return cached.read();
+	}
+
+	/**
+	 * Caches the newest JSON of a message, replacing what was cached for it before.
+	 *
+	 * @param messageId The ID (snowflake) of the message.
+	 * @param json      The message's JSON.
+	 */
+	void put(long messageId, @NotNull String json) {
+		CachedMessage cached = createCachedMessage(json);
+		if (cached == null) {
+			// Too big to ever fit, so just make sure nothing old is left behind
+			remove(messageId);
+			return;
+		}
+		CachedMessage oldProtected = protectedSegment.get(messageId);
+		if (oldProtected != null) {
+			// Stay protected, since the message is clearly still active
+			protectedSegment.put(messageId, cached);
+			protectedBytes += cached.weight() - oldProtected.weight();
+			oldProtected.free();
+			demoteProtected();
+		} else {
+			CachedMessage oldProbation = probation.put(messageId, cached);
+			probationBytes += cached.weight();
+			if (oldProbation != null) {
+				probationBytes -= oldProbation.weight();
+				oldProbation.free();
+			}
+		}
+		evictOverBudget();
+	}
+
+	/**
+	 * Removes a message from the cache, if it's cached.
+	 *
+	 * @param messageId The ID (snowflake) of the message.
+	 */
+	void remove(long messageId) {
+		CachedMessage cached = probation.remove(messageId);
+		if (cached != null) {
+			probationBytes -= cached.weight();
+			cached.free();
+		}
+		cached = protectedSegment.remove(messageId);
+		if (cached != null) {
+			protectedBytes -= cached.weight();
+			cached.free();
+		}
+	}
+
+	/**
+	 * Removes every message from the cache, which gives back any memory they took up in the
+	 * {@link MessageSlabArena}. This should be called once the cache won't be used anymore.
+	 */
+	void clear() {
+		probation.values().forEach(CachedMessage::free);
+		protectedSegment.values().forEach(CachedMessage::free);
+		probation.clear();
+		protectedSegment.clear();
+		probationBytes = 0;
+		protectedBytes = 0;
+	}
+
+	/**
+	 * @return A snapshot of how well {@code this} cache is doing.
+	 */
+	@NotNull
+	Stats getStats() {
+		return new Stats(hits, misses, evictions, probation.size() + protectedSegment.size(), probationBytes + protectedBytes);
+	}
+
+	private CachedMessage createCachedMessage(String json) {
+		long maxWeight = maxBytes - maxProtectedBytes;
+		if (!offHeap) {
+			long weight = json.length() + ENTRY_OVERHEAD_BYTES;
+			return (weight <= maxWeight) ? new CachedMessage(json, MessageSlabArena.NO_HANDLE, weight) : null;
+		}
+		// Messages are weighed by the whole chunk they're copied into (not just their bytes),
+		// since that's how much memory they actually keep from being used by anything else
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		int chunkSize = MessageSlabArena.chunkSizeFor(bytes.length);
+		if (chunkSize < 0 || chunkSize + ENTRY_OVERHEAD_BYTES > maxWeight) {
+			return null;
+		}
+		long handle = MessageSlabArena.allocate(bytes);
+		return (handle != MessageSlabArena.NO_HANDLE) ? new CachedMessage(null, handle, chunkSize + ENTRY_OVERHEAD_BYTES) : null;
+	}
+
+	private void demoteProtected() {
+		// Messages pushed out of the protected segment get one more chance in probation
+		Iterator<Map.Entry<Long, CachedMessage>> oldest = protectedSegment.entrySet().iterator();
+		while (protectedBytes > maxProtectedBytes && oldest.hasNext()) {
+			Map.Entry<Long, CachedMessage> entry = oldest.next();
+			oldest.remove();
+			protectedBytes -= entry.getValue().weight();
+			probation.put(entry.getKey(), entry.getValue());
+			probationBytes += entry.getValue().weight();
+		}
+	}
+
+	private void evictOverBudget() {
+		Iterator<Map.Entry<Long, CachedMessage>> oldest = probation.entrySet().iterator();
+		while (probationBytes + protectedBytes > maxBytes && oldest.hasNext()) {
+			CachedMessage evicted = oldest.next().getValue();
+			oldest.remove();
+			probationBytes -= evicted.weight();
+			evicted.free();
+			evictions++;
+		}
+	}
+}
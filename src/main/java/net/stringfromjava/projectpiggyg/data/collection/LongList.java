@@ -0,0 +1,86 @@
+package net.stringfromjava.projectpiggyg.data.collection;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of {@code long}s (usually snowflakes or file offsets), which is
+ * backed by a plain {@code long[]} instead of a list of boxed {@link Long}s.
+ * <p>
+ * NOTE: This isn't thread-safe.
+ */
+public final class LongList {
+
+	private long[] values;
+	private int size;
+
+	public LongList() {
+		this(8);
+	}
+
+	/**
+	 * @param capacity How many values the list can hold before it has to grow.
+	 */
+	public LongList(int capacity) {
+		values = new long[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Adds a value to the end of the list.
+	 *
+	 * @param value The value to add.
+	 */
+	public void add(long value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * @param index The index of the value.
+	 * @return The value at the given index.
+	 * @throws IndexOutOfBoundsException If the index is outside the list.
+	 */
+	public long get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(STR."Index \{index} is out of bounds for a list of size \{size}!");
+		}
+		return values[index];
+	}
+
+	/**
+	 * @return The last value in the list.
+	 * @throws IndexOutOfBoundsException If the list is empty.
+	 */
+	public long getLast() {
+		return get(size - 1);
+	}
+
+	/**
+	 * @return How many values are in the list.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return If the list has no values.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Sorts the list from smallest to biggest.
+	 */
+	public void sort() {
+		Arrays.sort(values, 0, size);
+	}
+
+	/**
+	 * @return A copy of the values in the list.
+	 */
+	public long[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,220 @@
+package net.stringfromjava.projectpiggyg.data.collection;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from {@code long} keys (usually snowflakes) to {@code long} values.
+ * <p>
+ * Unlike a {@code Map<Long, Long>}, nothing is boxed and there is no object per entry: the keys
+ * and values are kept in two plain arrays, using open addressing with linear probing. This makes
+ * each entry take up 16 bytes (or a bit more, since the arrays are never more than half full)
+ * instead of the ~80 bytes a {@link java.util.HashMap} entry with boxed keys and values takes.
+ * <p>
+ * NOTE: This isn't thread-safe.
+ */
+public final class LongLongMap {
+
+	/**
+	 * Runs an action for a single entry of a map.
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(long key, long value);
+	}
+
+	// A key of 0 marks an empty slot, so the actual key 0 is kept on the side
+	private static final long EMPTY_KEY = 0;
+
+	private long[] keys;
+	private long[] values;
+	private int mask;
+	private int size;
+	private boolean hasZeroKey;
+	private long zeroKeyValue;
+
+	public LongLongMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize How many entries the map is expected to hold, so it doesn't have to grow.
+	 */
+	public LongLongMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize * 2 - 1, 8)) << 1;
+		keys = new long[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Gets the value of a key.
+	 *
+	 * @param key          The key to look up.
+	 * @param defaultValue What to return if the key isn't in the map.
+	 * @return The key's value, or {@code defaultValue} if it isn't in the map.
+	 */
+	public long get(long key, long defaultValue) {
+		if (key == EMPTY_KEY) {
+			return hasZeroKey ? zeroKeyValue : defaultValue;
+		}
+		int slot = findSlot(key);
+		return (keys[slot] == key) ? values[slot] : defaultValue;
+	}
+
+	/**
+	 * @return If the key is in the map.
+	 */
+	public boolean containsKey(long key) {
+		if (key == EMPTY_KEY) {
+			return hasZeroKey;
+		}
+		return keys[findSlot(key)] == key;
+	}
+
+	/**
+	 * Sets the value of a key, replacing its old value if it had one.
+	 *
+	 * @param key   The key to set.
+	 * @param value The key's new value.
+	 */
+	public void put(long key, long value) {
+		if (key == EMPTY_KEY) {
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				size++;
+			}
+			zeroKeyValue = value;
+			return;
+		}
+		int slot = findSlot(key);
+		if (keys[slot] != key) {
+			keys[slot] = key;
+			size++;
+			if (size * 2 > keys.length) {
+				values[slot] = value;
+				grow();
+				return;
+			}
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * Removes a key from the map.
+	 *
+	 * @param key The key to remove.
+	 * @return If the key was in the map.
+	 */
+	public boolean remove(long key) {
+		if (key == EMPTY_KEY) {
+			boolean had = hasZeroKey;
+			if (had) {
+				hasZeroKey = false;
+				size--;
+			}
+			return had;
+		}
+		int gap = findSlot(key);
+		if (keys[gap] != key) {
+			return false;
+		}
+		// Shift back every entry after the removed one that would no longer be
+		// found past the gap, instead of leaving a "deleted" marker behind
+		int next = (gap + 1) & mask;
+		while (keys[next] != EMPTY_KEY) {
+			int ideal = idealSlot(keys[next]);
+			if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[gap] = EMPTY_KEY;
+		size--;
+		return true;
+	}
+
+	/**
+	 * @return How many entries are in the map.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Runs an action for every entry in the map, in no particular order.
+	 * The map must not be changed while this is running.
+	 *
+	 * @param action The action to run for each entry.
+	 */
+	public void forEach(EntryConsumer action) {
+		if (hasZeroKey) {
+			action.accept(EMPTY_KEY, zeroKeyValue);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY_KEY) {
+				action.accept(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return Every key in the map, in no particular order.
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int count = 0;
+		if (hasZeroKey) {
+			result[count++] = EMPTY_KEY;
+		}
+		for (long key : keys) {
+			if (key != EMPTY_KEY) {
+				result[count++] = key;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes every entry from the map.
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY_KEY);
+		hasZeroKey = false;
+		size = 0;
+	}
+
+	/**
+	 * Finds the slot that either holds the key, or the empty slot it would go in.
+	 */
+	private int findSlot(long key) {
+		int slot = idealSlot(key);
+		while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private int idealSlot(long key) {
+		// Snowflakes share most of their bits with each other,
+		// so the bits get mixed before picking a slot
+		long mixed = key * 0x9E3779B97F4A7C15L;
+		return (int) (mixed ^ (mixed >>> 32)) & mask;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new long[oldValues.length * 2];
+		mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY_KEY) {
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -2,6 +2,8 @@ package net.stringfromjava.projectpiggyg.data.command;
 
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 
+import java.util.List;
+
 /**
  * Record simply for holding info about an option for a new command.
  *
@@ -9,5 +11,11 @@ import net.dv8tion.jda.api.interactions.commands.OptionType;
  * @param name        The name of the option.
  * @param description The description of the option.
  * @param required    Is this option required?
+ * @param choices     The only values the option can be set to, or an empty list if it can be set to anything.
  */
-public record CommandOptionData(OptionType optionType, String name, String description, boolean required) {}
+public record CommandOptionData(OptionType optionType, String name, String description, boolean required, List<String> choices) {
+
+	public CommandOptionData(OptionType optionType, String name, String description, boolean required) {
+		this(optionType, name, description, required, List.of());
+	}
+}
@@ -0,0 +1,99 @@
+package net.stringfromjava.projectpiggyg.data.log;
+
+import net.stringfromjava.projectpiggyg.util.Constants;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * The different secondary indexes that PiggyG keeps over the log journals of every guild.
+ * <p>
+ * Each index maps a key (such as a user or channel ID) to the byte offset of every log
+ * that has the said key, so looking up logs by a key only ever reads the logs that match.
+ */
+public enum GuildLogIndex {
+	VOICE_ACTION_USER(
+			GuildLogType.VOICE_ACTION,
+			Constants.System.VOICE_ACTION_USER_INDEX_FILE_NAME,
+			log -> idsOf(log, "affected", "inflicter")
+	),
+	VOICE_ACTION_CHANNEL(
+			GuildLogType.VOICE_ACTION,
+			Constants.System.VOICE_ACTION_CHANNEL_INDEX_FILE_NAME,
+			log -> idsOf(log, "channel")
+	),
+	DELETED_MESSAGE_CHANNEL(
+			GuildLogType.DELETED_MESSAGE,
+			Constants.System.DELETED_MESSAGE_CHANNEL_INDEX_FILE_NAME,
+			log -> orUnknown(idsOf(log, "channel"))
+	);
+
+	/**
+	 * The key that logs are indexed under when they don't have the field
+	 * an index is for (such as deleted messages that were logged before
+	 * their channel was).
+	 */
+	public static final long UNKNOWN_KEY = 0;
+
+	private final GuildLogType type;
+	private final String fileName;
+	private final Function<JSONObject, long[]> keyExtractor;
+
+	GuildLogIndex(GuildLogType type, String fileName, Function<JSONObject, long[]> keyExtractor) {
+		this.type = type;
+		this.fileName = fileName;
+		this.keyExtractor = keyExtractor;
+	}
+
+	/**
+	 * @return The type of log {@code this} index is for.
+	 */
+	public GuildLogType getType() {
+		return type;
+	}
+
+	/**
+	 * @return The file name of {@code this} index inside a guild's {@code logs} folder.
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Gets every key a log should be found under.
+	 *
+	 * @param log The log.
+	 * @return The keys of the log (which may be empty).
+	 */
+	long[] keysOf(JSONObject log) {
+		return keyExtractor.apply(log);
+	}
+
+	private static long[] orUnknown(long[] keys) {
+		return (keys.length > 0) ? keys : new long[]{UNKNOWN_KEY};
+	}
+
+	/**
+	 * Gets the {@code id} of each of the given nested objects inside a log,
+	 * such as {@code {"channel": {"id": "123"}}}.
+	 */
+	private static long[] idsOf(JSONObject log, String... fields) {
+		long[] ids = new long[fields.length];
+		int count = 0;
+		for (String field : fields) {
+			JSONObject nested = log.optJSONObject(field);
+			if (nested == null) {
+				continue;
+			}
+			try {
+				ids[count] = Long.parseLong(nested.optString("id", ""));
+				count++;
+			} catch (NumberFormatException e) {
+				// Logs with an unknown ID just aren't indexed under it
+			}
+		}
+		// The same user can be both the affected and inflicting user
+		return Arrays.stream(ids, 0, count).distinct().toArray();
+	}
+}
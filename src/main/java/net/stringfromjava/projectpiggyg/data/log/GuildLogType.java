@@ -0,0 +1,87 @@
+package net.stringfromjava.projectpiggyg.data.log;
+
+import net.stringfromjava.projectpiggyg.data.cache.AttachmentBlobStore;
+import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.util.data.PathUtil;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+import java.io.File;
+
+/**
+ * The different kinds of logs that PiggyG keeps for every guild.
+ */
+public enum GuildLogType {
+	TROLL(Constants.System.TROLL_LOG_FILE_NAME, Constants.System.TROLL_LEGACY_LOG_FILE_NAME),
+	VOICE(Constants.System.VOICE_JOINS_LEAVES_LOG_FILE_NAME, Constants.System.VOICE_JOINS_LEAVES_LEGACY_LOG_FILE_NAME),
+	VOICE_ACTION(Constants.System.VOICE_ACTION_LOG_FILE_NAME, Constants.System.VOICE_ACTION_LEGACY_LOG_FILE_NAME),
+	DELETED_MESSAGE(Constants.System.DELETED_MESSAGE_LOG_FILE_NAME, Constants.System.DELETED_MESSAGE_LEGACY_LOG_FILE_NAME);
+
+	private final String fileName;
+	private final String legacyFileName;
+
+	GuildLogType(String fileName, String legacyFileName) {
+		this.fileName = fileName;
+		this.legacyFileName = legacyFileName;
+	}
+
+	/**
+	 * @return The file name of the log journal for {@code this} type of log (which
+	 * is also the name of its first partition).
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * @return The file name of the old {@code .json} log file for {@code this} type of log.
+	 */
+	public String getLegacyFileName() {
+		return legacyFileName;
+	}
+
+	/**
+	 * Gets the log journal of {@code this} type of log for a guild.
+	 *
+	 * @param guildId The ID of the guild.
+	 * @return The log journal.
+	 */
+	@NotNull
+	public PartitionedLogJournal journalOf(String guildId) {
+		return PartitionedLogJournal.of(guildId, fileName);
+	}
+
+	/**
+	 * Gets the old {@code .json} log file of {@code this} type of log for a guild.
+	 *
+	 * @param guildId The ID of the guild.
+	 * @return The old log file (which may not exist).
+	 */
+	@NotNull
+	public File legacyFileOf(String guildId) {
+		return new File(PathUtil.fromGuildLogs(guildId, legacyFileName));
+	}
+
+	/**
+	 * Removes every reference a log of {@code this} type holds on attachment blobs.
+	 * This should be called right before the log is deleted.
+	 *
+	 * @param log The log.
+	 */
+	public void releaseAttachmentBlobs(@NotNull JSONObject log) {
+		switch (this) {
+			case TROLL -> {
+				JSONObject attachment = log.optJSONObject("attachment");
+				if (attachment != null && attachment.has("sha256")) {
+					AttachmentBlobStore.release(attachment.getString("sha256"));
+				}
+			}
+			case DELETED_MESSAGE -> {
+				JSONObject snapshot = log.optJSONObject("snapshot");
+				if (snapshot != null) {
+					AttachmentBlobStore.releaseMessageBlobs(snapshot);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,758 @@
+package net.stringfromjava.projectpiggyg.data.log;
+
+import net.stringfromjava.projectpiggyg.data.cache.AttachmentBlobStore;
+import net.stringfromjava.projectpiggyg.data.collection.LongList;
+import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.util.app.AppUtil;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogContext;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import net.stringfromjava.projectpiggyg.util.data.FileUtil;
+import net.stringfromjava.projectpiggyg.util.data.PathUtil;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A write-ahead log that every new log of a guild goes through before
+ * it's added to its {@link PartitionedLogJournal}.
+ * <p>
+ * New logs that show up within the same (configurable) window of time are
+ * grouped together, written to the write-ahead log with one write, and
+ * synced to the disk together with one {@code fsync}. After that, they get
+ * added to their log journals in the background. This way, a raid or spam
+ * burst costs one disk sync per window instead of one open/write/close per log.
+ * <p>
+ * Every once in a while, the write-ahead log gets checkpointed. The checkpoint
+ * remembers how big every log journal was, so if PiggyG crashes, the journals
+ * are cut back to that size and every log in the write-ahead log is added again.
+ * This makes sure logs are never lost <i>or</i> duplicated.
+ */
+public final class GuildWriteAheadLog {
+
+	private static final Map<String, GuildWriteAheadLog> openLogs = new ConcurrentHashMap<>();
+
+	private static final ScheduledExecutorService committer = Executors.newScheduledThreadPool(
+			2,
+			Thread.ofPlatform().name("piggyg-wal-", 0).daemon(true).factory()
+	);
+
+	// Every version that's handed out is new, even across guilds or after a
+	// guild's logs are closed and opened again, so a version is never reused
+	private static final AtomicLong lastVersion = new AtomicLong();
+	private static volatile boolean allClosed = false;
+
+	private final String guildId;
+	private final LogJournal wal;
+	private final Path checkpointPath;
+	private final long commitWindowMs;
+	private final long checkpointBytes;
+	private final long retentionMillis;
+	private final Map<GuildLogIndex, LogIndex> indexes = new ConcurrentHashMap<>();
+
+	// Everything below is guarded by "this"
+	private List<PendingLog> pending = new ArrayList<>();
+	private List<CompletableFuture<Void>> applyWaiters = new ArrayList<>();
+	private boolean commitScheduled = false;
+	private boolean closed = false;
+	private long nextSeq;
+	private final Map<GuildLogType, Long> versions = new EnumMap<>(GuildLogType.class);
+
+	// Guards writing to the write-ahead log and applying to the journals,
+	// so batches always land in the same order they were made in
+	private final Object commitLock = new Object();
+	private long lastCommittedSeq;
+	// Set when logs made it into the write-ahead log, but adding them to their journals failed,
+	// so the journals have to be replayed from the write-ahead log before it's checkpointed again
+	private boolean journalsBehind = false;
+	// Types whose old log file was migrated, but not renamed yet
+	private final Set<GuildLogType> migratedTypes = EnumSet.noneOf(GuildLogType.class);
+
+	/**
+	 * A log that was appended, but hasn't been written to the write-ahead log yet.
+	 */
+	private record PendingLog(long seq, GuildLogType type, JSONObject log, CompletableFuture<Void> durable) {
+	}
+
+	private GuildWriteAheadLog(String guildId) {
+		this.guildId = guildId;
+		wal = LogJournal.of(guildId, Constants.System.GUILD_WRITE_AHEAD_LOG_FILE_NAME);
+		checkpointPath = Paths.get(PathUtil.fromGuildLogs(guildId, Constants.System.GUILD_WRITE_AHEAD_LOG_CHECKPOINT_FILE_NAME));
+		commitWindowMs = Math.max(0, AppUtil.getConfigLong("wal_group_commit_window_ms", 10));
+		checkpointBytes = Math.max(0, AppUtil.getConfigLong("wal_checkpoint_bytes", 4L * 1024 * 1024));
+		retentionMillis = TimeUnit.DAYS.toMillis(Math.max(0, AppUtil.getConfigLong("log_retention_days", 0)));
+		for (GuildLogType type : GuildLogType.values()) {
+			versions.put(type, lastVersion.incrementAndGet());
+		}
+		recover();
+	}
+
+	/**
+	 * Gets (or opens) the write-ahead log of a guild. The first time this is called
+	 * for a guild, any logs left over from a crash are recovered, and any old
+	 * {@code .json} log files are migrated into log journals.
+	 *
+	 * @param guildId The ID of the guild.
+	 * @return The guild's write-ahead log.
+	 * @throws IllegalStateException If every write-ahead log was already closed with {@link #closeAll()}.
+	 */
+	@NotNull
+	public static GuildWriteAheadLog of(String guildId) {
+		if (allClosed) {
+			throw new IllegalStateException(STR."Can't open the write-ahead log for guild ID \{guildId}, since every write-ahead log was closed!");
+		}
+		return openLogs.computeIfAbsent(guildId, GuildWriteAheadLog::new);
+	}
+
+	/**
+	 * Closes the write-ahead log of a guild without checkpointing it. Every log that was appended
+	 * but not committed yet is thrown away (and its future fails), since the guild's logs are
+	 * about to be deleted anyway. This should be called before a guild's folder gets deleted.
+	 *
+	 * @param guildId The ID of the guild.
+	 */
+	public static void closeGuild(String guildId) {
+		GuildWriteAheadLog log = openLogs.remove(guildId);
+		if (log != null) {
+			log.discard();
+		}
+		PartitionedLogJournal.closeGuild(guildId);
+		LogJournal.closeGuild(guildId);
+	}
+
+	/**
+	 * Writes every pending log, checkpoints and closes every write-ahead log.
+	 * After this, no write-ahead log can be opened again.
+	 */
+	public static void closeAll() {
+		allClosed = true;
+		for (GuildWriteAheadLog log : openLogs.values()) {
+			try {
+				log.close();
+			} catch (RuntimeException e) {
+				LoggerUtil.log(
+						LogCategory.GUILD_LOGS,
+						LogType.ERROR,
+						LogContext.EMPTY.withGuild(log.guildId),
+						() -> STR."Failed to checkpoint the write-ahead log for guild ID \{log.guildId}, got this error: '\{e.getMessage()}'"
+				);
+			}
+		}
+		openLogs.clear();
+		committer.shutdown();
+	}
+
+	/**
+	 * Adds a new log for {@code this} guild.
+	 *
+	 * @param type The type of log.
+	 * @param log  The log to add.
+	 * @return A {@link java.util.concurrent.CompletableFuture} that completes once the
+	 * log is safely synced to the disk inside the write-ahead log.
+	 */
+	@NotNull
+	public CompletableFuture<Void> append(@NotNull GuildLogType type, @NotNull JSONObject log) {
+		CompletableFuture<Void> durable = new CompletableFuture<>();
+		synchronized (this) {
+			if (closed) {
+				return CompletableFuture.failedFuture(closedException());
+			}
+			pending.add(new PendingLog(nextSeq++, type, log, durable));
+			versions.put(type, lastVersion.incrementAndGet());
+			scheduleCommit(commitWindowMs);
+		}
+		return durable;
+	}
+
+	/**
+	 * Gets the version of a type of log for {@code this} guild, which changes every time a log of
+	 * that type is added (or old ones are dropped). As long as the version stays the same, so do
+	 * the logs, which means anything that was made from them can be reused.
+	 * <p>
+	 * NOTE: Get the version <i>before</i> reading the logs, so a log that's added while
+	 * they're being read makes what was made from them out of date instead of missing.
+	 *
+	 * @param type The type of log.
+	 * @return The current version of the type of log.
+	 */
+	public synchronized long getVersion(@NotNull GuildLogType type) {
+		return versions.get(type);
+	}
+
+	/**
+	 * Waits until every log appended before this call has been added to its log journal.
+	 * Call this before reading a journal so recently added logs aren't missed.
+	 *
+	 * @throws IllegalStateException If {@code this} write-ahead log is closed.
+	 */
+	public void sync() {
+		CompletableFuture<Void> applied = new CompletableFuture<>();
+		synchronized (this) {
+			if (closed) {
+				throw closedException();
+			}
+			applyWaiters.add(applied);
+			scheduleCommit(0);
+		}
+		applied.join();
+	}
+
+	/**
+	 * Streams every log of a type for {@code this} guild, including the ones
+	 * that were appended right before this call.
+	 *
+	 * @param type The type of log.
+	 * @return A {@link java.util.stream.Stream} of every log, from oldest to newest.
+	 */
+	@NotNull
+	public Stream<JSONObject> stream(@NotNull GuildLogType type) {
+		return stream(type, TimeRange.ALL);
+	}
+
+	/**
+	 * Streams every log of a type for {@code this} guild from the partitions that might have
+	 * logs in a range of time, including the ones that were appended right before this call.
+	 * <p>
+	 * NOTE: Logs outside the range can still be included, so they have to be filtered afterward.
+	 *
+	 * @param type  The type of log.
+	 * @param range The range of time to read the partitions of.
+	 * @return A {@link java.util.stream.Stream} of the logs, from oldest to newest.
+	 */
+	@NotNull
+	public Stream<JSONObject> stream(@NotNull GuildLogType type, @NotNull TimeRange range) {
+		sync();
+		return type.journalOf(guildId).stream(range);
+	}
+
+	/**
+	 * Lazily streams every log of a type for {@code this} guild that matches a filter, from
+	 * newest to oldest. The journal is read from start to end once (skipping every partition
+	 * without logs in the range), only remembering the offset of each log that matches, and
+	 * then the matching logs are read again as the stream is used.
+	 *
+	 * @param type   The type of log.
+	 * @param range  The range of time to read the partitions of.
+	 * @param filter Which logs to include.
+	 * @return A {@link java.util.stream.Stream} of every matching log, from newest to oldest.
+	 */
+	@NotNull
+	public Stream<JSONObject> streamNewest(@NotNull GuildLogType type, @NotNull TimeRange range, @NotNull Predicate<JSONObject> filter) {
+		sync();
+		PartitionedLogJournal journal = type.journalOf(guildId);
+		LongList offsets = new LongList();
+		try (Stream<LogJournal.Entry> entries = journal.entries(0, range)) {
+			entries.filter(entry -> filter.test(entry.log()))
+					.forEach(entry -> offsets.add(entry.offset()));
+		}
+		return read(journal, offsets, true, TimeRange.ALL);
+	}
+
+	/**
+	 * Lazily streams every log of a type for {@code this} guild that has any of the given keys
+	 * inside an index, from oldest to newest. Only the logs that match (and are inside a partition
+	 * that might have logs in the range) are read from the log journal.
+	 *
+	 * @param index The index to look the keys up in.
+	 * @param range The range of time to read the partitions of.
+	 * @param keys  The keys to look up, such as user or channel IDs.
+	 * @return A {@link java.util.stream.Stream} of every matching log, from oldest to newest.
+	 */
+	@NotNull
+	public Stream<JSONObject> lookup(@NotNull GuildLogIndex index, @NotNull TimeRange range, long... keys) {
+		sync();
+		return read(index.getType().journalOf(guildId), offsetsOf(index, keys), false, range);
+	}
+
+	/**
+	 * Lazily streams every log of a type for {@code this} guild that has any of the given keys
+	 * inside an index, from newest to oldest. Since logs are only read as the stream is used,
+	 * getting the newest {@code N} logs only ever reads {@code N} logs.
+	 *
+	 * @param index The index to look the keys up in.
+	 * @param range The range of time to read the partitions of.
+	 * @param keys  The keys to look up, such as user or channel IDs.
+	 * @return A {@link java.util.stream.Stream} of every matching log, from newest to oldest.
+	 */
+	@NotNull
+	public Stream<JSONObject> lookupNewest(@NotNull GuildLogIndex index, @NotNull TimeRange range, long... keys) {
+		sync();
+		return read(index.getType().journalOf(guildId), offsetsOf(index, keys), true, range);
+	}
+
+	/**
+	 * Gets how many logs have any of the given keys inside an index, without reading any of them.
+	 *
+	 * @param index The index to look the keys up in.
+	 * @param keys  The keys to look up, such as user or channel IDs.
+	 * @return How many logs have the keys. (A log with more than one of the keys is counted more than once.)
+	 */
+	public int count(@NotNull GuildLogIndex index, long... keys) {
+		sync();
+		LogIndex logIndex = indexOf(index);
+		int count = 0;
+		for (long key : keys) {
+			count += logIndex.count(key);
+		}
+		return count;
+	}
+
+	/**
+	 * Drops the partitions of every log journal that are past the retention period, syncs
+	 * every log journal to the disk, saves a checkpoint of their sizes, and then empties
+	 * the write-ahead log.
+	 */
+	public void checkpoint() {
+		synchronized (commitLock) {
+			// Never empty the write-ahead log while it has the only copy of some logs
+			if (journalsBehind) {
+				replayWriteAheadLog();
+			}
+			if (retentionMillis > 0) {
+				dropExpiredPartitions(System.currentTimeMillis() - retentionMillis);
+			}
+			JSONObject sizes = new JSONObject();
+			for (GuildLogType type : GuildLogType.values()) {
+				PartitionedLogJournal journal = type.journalOf(guildId);
+				journal.force();
+				sizes.put(type.name(), journal.size());
+			}
+			JSONObject checkpoint = new JSONObject()
+					.put("seq", lastCommittedSeq)
+					.put("sizes", sizes);
+			if (!migratedTypes.isEmpty()) {
+				checkpoint.put("migrated", new JSONArray(migratedTypes.stream().map(Enum::name).toList()));
+			}
+
+			// Write the checkpoint to a temporary file first so
+			// a crash can never leave behind half of a checkpoint
+			try {
+				Path tempPath = Paths.get(STR."\{checkpointPath}.tmp");
+				Files.writeString(tempPath, checkpoint.toString());
+				Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				throw new UncheckedIOException(STR."Failed to save the write-ahead log checkpoint for guild ID \{guildId}!", e);
+			}
+			wal.truncate(0);
+			wal.force();
+		}
+	}
+
+	private void dropExpiredPartitions(long cutoffMillis) {
+		for (GuildLogType type : GuildLogType.values()) {
+			int dropped = type.journalOf(guildId).dropPartitionsBefore(cutoffMillis, type::releaseAttachmentBlobs);
+			if (dropped == 0) {
+				continue;
+			}
+			synchronized (this) {
+				versions.put(type, lastVersion.incrementAndGet());
+			}
+			for (LogIndex index : indexes.values()) {
+				if (index.getDefinition().getType() == type) {
+					index.dropDeletedLogs();
+				}
+			}
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.INFO,
+					LogContext.EMPTY.withGuild(guildId),
+					() -> STR."Dropped \{dropped} old \{type} log partition\{dropped != 1 ? "s" : ""} for guild ID \{guildId}."
+			);
+		}
+	}
+
+	/**
+	 * Must be called while holding the lock on {@code this}.
+	 */
+	private void scheduleCommit(long delayMs) {
+		if (commitScheduled) {
+			return;
+		}
+		commitScheduled = true;
+		try {
+			committer.schedule(this::commit, delayMs, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// The committer was shut down, so nothing would ever commit (or
+			// wake up) what's waiting, which means it has to fail right away
+			commitScheduled = false;
+			closed = true;
+			failWaiting(closedException());
+		}
+	}
+
+	/**
+	 * Commits and checkpoints whatever is still waiting to be committed,
+	 * and then stops {@code this} write-ahead log from taking any more logs.
+	 */
+	private void close() {
+		synchronized (commitLock) {
+			synchronized (this) {
+				closed = true;
+			}
+			commit();
+			checkpoint();
+			closeIndexes();
+		}
+	}
+
+	/**
+	 * Throws away whatever is still waiting to be committed, and then stops {@code this}
+	 * write-ahead log from taking any more logs. Since this holds the commit lock, a commit
+	 * that was already scheduled finds nothing to commit, so it never touches the journals.
+	 */
+	private void discard() {
+		synchronized (commitLock) {
+			synchronized (this) {
+				closed = true;
+				failWaiting(closedException());
+			}
+			closeIndexes();
+		}
+	}
+
+	/**
+	 * Fails every log and {@link #sync()} that's waiting to be committed.
+	 * Must be called while holding the lock on {@code this}.
+	 */
+	private void failWaiting(RuntimeException e) {
+		pending.forEach(log -> log.durable().completeExceptionally(e));
+		applyWaiters.forEach(waiter -> waiter.completeExceptionally(e));
+		pending = new ArrayList<>();
+		applyWaiters = new ArrayList<>();
+	}
+
+	private IllegalStateException closedException() {
+		return new IllegalStateException(STR."The write-ahead log for guild ID \{guildId} is closed!");
+	}
+
+	private void commit() {
+		synchronized (commitLock) {
+			List<PendingLog> batch;
+			List<CompletableFuture<Void>> waiters;
+			synchronized (this) {
+				batch = pending;
+				waiters = applyWaiters;
+				pending = new ArrayList<>();
+				applyWaiters = new ArrayList<>();
+				commitScheduled = false;
+			}
+
+			boolean written = false;
+			try {
+				if (!batch.isEmpty()) {
+					// Write the whole group with one write and one sync
+					List<JSONObject> walEntries = new ArrayList<>(batch.size());
+					for (PendingLog log : batch) {
+						walEntries.add(new JSONObject()
+								.put("seq", log.seq())
+								.put("type", log.type().name())
+								.put("log", log.log()));
+					}
+					wal.appendAll(walEntries);
+					wal.force();
+					written = true;
+					lastCommittedSeq = batch.getLast().seq();
+					batch.forEach(log -> log.durable().complete(null));
+
+					// Now that the logs are safe, add them to their journals
+					if (journalsBehind) {
+						// This also adds the batch, since it's in the write-ahead log now
+						replayWriteAheadLog();
+					} else {
+						Map<GuildLogType, List<JSONObject>> byType = new EnumMap<>(GuildLogType.class);
+						for (PendingLog log : batch) {
+							byType.computeIfAbsent(log.type(), k -> new ArrayList<>()).add(log.log());
+						}
+						applyToJournals(byType);
+					}
+
+					if (wal.size() >= checkpointBytes) {
+						checkpoint();
+					}
+				}
+				waiters.forEach(waiter -> waiter.complete(null));
+			} catch (RuntimeException e) {
+				if (written) {
+					// The logs are safe inside the write-ahead log, but some of them
+					// (or all of them) may be missing from their journals
+					journalsBehind = true;
+				}
+				LoggerUtil.log(
+						LogCategory.GUILD_LOGS,
+						LogType.ERROR,
+						LogContext.EMPTY.withGuild(guildId),
+						() -> STR."Failed to commit \{batch.size()} log\{batch.size() != 1 ? "s" : ""} for guild ID \{guildId}, got this error: '\{e.getMessage()}'"
+				);
+				batch.forEach(log -> log.durable().completeExceptionally(e));
+				waiters.forEach(waiter -> waiter.completeExceptionally(e));
+			}
+		}
+	}
+
+	private void applyToJournals(Map<GuildLogType, List<JSONObject>> byType) {
+		for (Map.Entry<GuildLogType, List<JSONObject>> entry : byType.entrySet()) {
+			PartitionedLogJournal journal = entry.getKey().journalOf(guildId);
+			long[] offsets = journal.appendAll(entry.getValue());
+			for (LogIndex index : indexes.values()) {
+				if (index.getDefinition().getType() == entry.getKey()) {
+					index.addAll(entry.getValue(), offsets, journal.size());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the offsets of every log with any of the given keys, from oldest to newest.
+	 */
+	private LongList offsetsOf(GuildLogIndex index, long... keys) {
+		LogIndex logIndex = indexOf(index);
+		LongList offsets = new LongList();
+		for (long key : keys) {
+			for (long offset : logIndex.get(key)) {
+				offsets.add(offset);
+			}
+		}
+		offsets.sort();
+		return offsets;
+	}
+
+	private static Stream<JSONObject> read(PartitionedLogJournal journal, LongList offsets, boolean newestFirst, TimeRange range) {
+		int last = offsets.size() - 1;
+		// A log found under more than one key is only read once, and logs
+		// inside a partition without any logs in the range aren't read at all
+		return IntStream.rangeClosed(0, last)
+				.map(i -> newestFirst ? last - i : i)
+				.filter(i -> i == 0 || offsets.get(i) != offsets.get(i - 1))
+				.filter(i -> range.isAll() || journal.mightBeIn(offsets.get(i), range))
+				.mapToObj(i -> journal.read(offsets.get(i)))
+				.filter(Objects::nonNull);
+	}
+
+	private LogIndex indexOf(GuildLogIndex index) {
+		return indexes.computeIfAbsent(index, k -> new LogIndex(
+				k,
+				k.getType().journalOf(guildId),
+				Paths.get(PathUtil.fromGuildLogs(guildId, k.getFileName()))
+		));
+	}
+
+	private void closeIndexes() {
+		indexes.values().forEach(LogIndex::close);
+		indexes.clear();
+	}
+
+	/**
+	 * Brings every log journal back to the state it was in when PiggyG last
+	 * stopped, migrates old log files, and then starts a fresh checkpoint.
+	 */
+	private void recover() {
+		int replayed = replayWriteAheadLog();
+		if (replayed > 0) {
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.INFO,
+					LogContext.EMPTY.withGuild(guildId),
+					() -> STR."Recovered \{replayed} log\{replayed != 1 ? "s" : ""} from the write-ahead log for guild ID \{guildId}."
+			);
+		}
+
+		migrateLegacyLogs();
+		checkpoint();
+
+		// Open every index now so they're kept up to date from here on,
+		// and so any index that's missing gets built before it's needed
+		for (GuildLogIndex index : GuildLogIndex.values()) {
+			indexOf(index);
+		}
+	}
+
+	/**
+	 * Cuts every log journal back to the last checkpoint, and then adds every log from the write-ahead
+	 * log after it again. This brings the journals up to date with the write-ahead log, no matter how
+	 * many of its logs already made it into them. Must be called while holding the commit lock
+	 * (or before {@code this} write-ahead log is opened).
+	 *
+	 * @return How many logs were replayed.
+	 */
+	private int replayWriteAheadLog() {
+		long lastSeq = -1;
+		File checkpointFile = checkpointPath.toFile();
+		if (checkpointFile.isFile()) {
+			try {
+				JSONObject checkpoint = new JSONObject(FileUtil.getFileData(checkpointFile));
+				lastSeq = checkpoint.optLong("seq", -1);
+				JSONObject sizes = checkpoint.optJSONObject("sizes", new JSONObject());
+				// Cut off anything that was added after the checkpoint, since
+				// all of it is about to be added again from the write-ahead log
+				for (GuildLogType type : GuildLogType.values()) {
+					if (sizes.has(type.name())) {
+						type.journalOf(guildId).truncate(sizes.getLong(type.name()));
+					}
+				}
+				JSONArray migrated = checkpoint.optJSONArray("migrated", new JSONArray());
+				for (int i = 0; i < migrated.length(); i++) {
+					migratedTypes.add(GuildLogType.valueOf(migrated.getString(i)));
+				}
+			} catch (IllegalArgumentException | JSONException e) {
+				LoggerUtil.log(
+						LogCategory.GUILD_LOGS,
+						LogType.WARN,
+						LogContext.EMPTY.withGuild(guildId),
+						() -> STR."The write-ahead log checkpoint for guild ID \{guildId} is corrupted! Replaying every log in it..."
+				);
+			}
+		}
+
+		// Replay every log that hasn't made it into a checkpoint yet
+		Map<GuildLogType, List<JSONObject>> byType = new EnumMap<>(GuildLogType.class);
+		long maxSeq = lastSeq;
+		int replayed = 0;
+		try (Stream<JSONObject> entries = wal.stream()) {
+			for (JSONObject entry : (Iterable<JSONObject>) entries::iterator) {
+				long seq = entry.optLong("seq", -1);
+				if (seq <= lastSeq) {
+					continue;
+				}
+				try {
+					GuildLogType type = GuildLogType.valueOf(entry.getString("type"));
+					byType.computeIfAbsent(type, k -> new ArrayList<>()).add(entry.getJSONObject("log"));
+					maxSeq = Math.max(maxSeq, seq);
+					replayed++;
+				} catch (IllegalArgumentException | JSONException e) {
+					LoggerUtil.log(
+							LogCategory.GUILD_LOGS,
+							LogType.WARN,
+							LogContext.EMPTY.withGuild(guildId),
+							() -> STR."Found a corrupted entry inside the write-ahead log for guild ID \{guildId}. Skipping..."
+					);
+				}
+			}
+		}
+		// Open indexes may still have logs that were just cut off
+		for (LogIndex index : indexes.values()) {
+			index.dropDeletedLogs();
+		}
+		applyToJournals(byType);
+		synchronized (this) {
+			// Logs that are waiting to be committed already have their sequence numbers
+			nextSeq = Math.max(nextSeq, maxSeq + 1);
+			for (GuildLogType type : byType.keySet()) {
+				versions.put(type, lastVersion.incrementAndGet());
+			}
+		}
+		lastCommittedSeq = maxSeq;
+		journalsBehind = false;
+		return replayed;
+	}
+
+	private void migrateLegacyLogs() {
+		for (GuildLogType type : GuildLogType.values()) {
+			File legacyFile = type.legacyFileOf(guildId);
+			if (!legacyFile.isFile()) {
+				migratedTypes.remove(type);
+				continue;
+			}
+			if (!migratedTypes.contains(type)) {
+				// Save a checkpoint first, so if PiggyG crashes partway through, the
+				// journal is cut back to before the migration and it's done over again
+				checkpoint();
+				int migrated = PartitionedLogJournal.migrateLegacyLog(legacyFile, type.journalOf(guildId), log -> convertLegacyLog(type, log));
+				if (migrated < 0) {
+					continue;
+				}
+				// Then save that the migration is done, so if PiggyG crashes before
+				// the old file is renamed, its logs don't get migrated a second time
+				migratedTypes.add(type);
+				checkpoint();
+				LoggerUtil.log(
+						LogCategory.GUILD_LOGS,
+						LogType.INFO,
+						LogContext.EMPTY.withGuild(guildId),
+						() -> STR."Migrated \{migrated} \{type} log\{migrated != 1 ? "s" : ""} for guild ID \{guildId} to a log journal."
+				);
+			}
+			PartitionedLogJournal.finishLegacyMigration(legacyFile);
+			migratedTypes.remove(type);
+		}
+	}
+
+	private JSONObject convertLegacyLog(GuildLogType type, Object log) {
+		switch (type) {
+			case TROLL -> {
+				// Old troll logs only stored the troll's ID, while
+				// the rest of the troll was inside its own file
+				if (!(log instanceof String trollId)) {
+					return null;
+				}
+				File trollFile = new File(PathUtil.fromGuildBlobCache(
+						guildId,
+						Constants.System.GUILD_BLOB_CACHE_TROLLS_FOLDER_NAME,
+						trollId,
+						Constants.System.GUILD_BLOB_CACHE_TROLL_INFO_FILE_NAME
+				));
+				if (!trollFile.isFile()) {
+					return new JSONObject().put("id", trollId);
+				}
+				JSONObject troll;
+				try {
+					troll = new JSONObject(FileUtil.getFileData(trollFile)).put("id", trollId);
+				} catch (JSONException e) {
+					return new JSONObject().put("id", trollId);
+				}
+				// Move the troll's attachment (if it had one) into the blob store
+				JSONObject attachment = troll.optJSONObject("attachment");
+				File attachmentFile = (attachment != null)
+						? new File(trollFile.getParentFile(), attachment.optString("name", ""))
+						: null;
+				if (attachmentFile != null && attachmentFile.isFile()) {
+					try (InputStream in = Files.newInputStream(attachmentFile.toPath())) {
+						attachment.put("sha256", AttachmentBlobStore.store(in));
+					} catch (IOException e) {
+						LoggerUtil.log(
+								LogCategory.GUILD_LOGS,
+								LogType.WARN,
+								LogContext.EMPTY.withGuild(guildId),
+								() -> STR."Failed to move the attachment of troll '\{trollId}' into the blob store, got this error message: '\{e.getMessage()}'"
+						);
+					}
+				}
+				return troll;
+			}
+			case DELETED_MESSAGE -> {
+				// Old deleted message logs only stored the message's ID
+				return (log instanceof String messageId) ? new JSONObject().put("id", messageId) : null;
+			}
+			default -> {
+				return (log instanceof JSONObject logJson) ? logJson : null;
+			}
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package net.stringfromjava.projectpiggyg.data.log;
+
+import net.stringfromjava.projectpiggyg.data.collection.LongList;
+import net.stringfromjava.projectpiggyg.data.collection.LongLongMap;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk secondary index over a {@link PartitionedLogJournal}.
+ * <p>
+ * The index file starts with how many bytes of the journal have been indexed, followed
+ * by one {@code [long key][long offset]} entry for every key of every log. New entries are
+ * only ever added to the end. The whole index is kept in memory while it's open.
+ * <p>
+ * Since the header is always written after the entries (which are synced to the disk first),
+ * anything past the indexed size (for example, if PiggyG was killed in the middle of a write)
+ * is ignored and indexed again.
+ * <p>
+ * In memory, each key maps to a slot in a list of posting lists, which hold the key's offsets
+ * as plain {@code long}s, so a big index doesn't turn into millions of boxed {@link Long}s.
+ */
+final class LogIndex implements Closeable {
+
+	private static final int HEADER_SIZE = Long.BYTES;
+	private static final int ENTRY_SIZE = Long.BYTES * 2;
+
+	private final GuildLogIndex definition;
+	private final PartitionedLogJournal journal;
+	private final Path path;
+	private final FileChannel channel;
+	private final LongLongMap postingSlots = new LongLongMap();
+	private final List<LongList> postings = new ArrayList<>();
+	private long indexedSize;
+	private long fileEnd = HEADER_SIZE;
+
+	LogIndex(GuildLogIndex definition, PartitionedLogJournal journal, Path path) {
+		this.definition = definition;
+		this.journal = journal;
+		this.path = path;
+		try {
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			load();
+		} catch (IOException e) {
+			throw new UncheckedIOException(STR."Failed to open log index '\{path}'!", e);
+		}
+		catchUp();
+	}
+
+	/**
+	 * Adds logs that were just added to the journal to {@code this} index.
+	 *
+	 * @param logs    The logs that were added.
+	 * @param offsets The offset each log was written at.
+	 * @param end     The size of the journal right after the logs were added.
+	 */
+	synchronized void addAll(List<JSONObject> logs, long[] offsets, long end) {
+		LongList entries = new LongList();
+		for (int i = 0; i < logs.size(); i++) {
+			// Skip anything that was already picked up by catchUp()
+			if (offsets[i] < indexedSize) {
+				continue;
+			}
+			for (long key : definition.keysOf(logs.get(i))) {
+				entries.add(key);
+				entries.add(offsets[i]);
+			}
+		}
+		write(entries, Math.max(indexedSize, end));
+	}
+
+	/**
+	 * Gets the offset of every log with the given key, from oldest to newest.
+	 *
+	 * @param key The key to look up.
+	 * @return The offsets of the logs.
+	 */
+	@NotNull
+	synchronized long[] get(long key) {
+		catchUp();
+		LongList offsets = postingsOf(key);
+		return (offsets != null) ? offsets.toArray() : new long[0];
+	}
+
+	/**
+	 * Gets how many logs have the given key.
+	 *
+	 * @param key The key to look up.
+	 * @return How many logs have the key.
+	 */
+	synchronized int count(long key) {
+		catchUp();
+		LongList offsets = postingsOf(key);
+		return (offsets != null) ? offsets.size() : 0;
+	}
+
+	/**
+	 * Forgets every log that isn't inside the journal anymore, either because
+	 * its partition got dropped or because the journal was cut back.
+	 */
+	synchronized void dropDeletedLogs() {
+		indexedSize = Math.min(indexedSize, journal.size());
+		try {
+			rewrite();
+		} catch (IOException e) {
+			throw new UncheckedIOException(STR."Failed to write to log index '\{path}'!", e);
+		}
+	}
+
+	GuildLogIndex getDefinition() {
+		return definition;
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.WARN,
+					() -> STR."Failed to close log index '\{path}', got this error: '\{e.getMessage()}'"
+			);
+		}
+	}
+
+	/**
+	 * Indexes every log that was added to the journal without going through {@link #addAll},
+	 * such as logs that were migrated or replayed, or every log if the index was just created.
+	 */
+	private synchronized void catchUp() {
+		long end = journal.size();
+		if (indexedSize >= end) {
+			return;
+		}
+		LongList entries = new LongList();
+		try (Stream<LogJournal.Entry> newEntries = journal.entries(indexedSize)) {
+			newEntries.forEach(entry -> {
+				for (long key : definition.keysOf(entry.log())) {
+					entries.add(key);
+					entries.add(entry.offset());
+				}
+			});
+		}
+		write(entries, end);
+	}
+
+	private void load() throws IOException {
+		long fileSize = channel.size();
+		if (fileSize < HEADER_SIZE) {
+			return;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(header, 0);
+		long headerSize = header.flip().getLong();
+
+		// The journal may have been cut back during recovery (or had its oldest partitions
+		// dropped), so anything pointing past its end (or before its start) gets thrown away
+		long journalSize = journal.size();
+		long firstOffset = journal.firstOffset();
+		indexedSize = Math.min(headerSize, journalSize);
+		boolean stale = headerSize > journalSize;
+
+		ByteBuffer entries = ByteBuffer.allocate((int) Math.min(fileSize - HEADER_SIZE, Integer.MAX_VALUE) / ENTRY_SIZE * ENTRY_SIZE);
+		while (entries.hasRemaining() && channel.read(entries, HEADER_SIZE + entries.position()) > 0) {
+			// Keep reading until every entry is in the buffer
+		}
+		entries.flip();
+		while (entries.remaining() >= ENTRY_SIZE) {
+			long key = entries.getLong();
+			long offset = entries.getLong();
+			if (offset >= indexedSize || offset < firstOffset) {
+				stale = true;
+				continue;
+			}
+			addPosting(key, offset);
+		}
+		fileEnd = HEADER_SIZE + (long) entries.position();
+
+		if (stale) {
+			rewrite();
+		}
+	}
+
+	/**
+	 * Writes the whole index from memory, dropping every entry that's no longer valid.
+	 */
+	private void rewrite() throws IOException {
+		long firstOffset = journal.firstOffset();
+		LongList entries = new LongList();
+		postingSlots.forEach((key, slot) -> {
+			LongList offsets = postings.get((int) slot);
+			for (int i = 0; i < offsets.size(); i++) {
+				if (offsets.get(i) >= firstOffset && offsets.get(i) < indexedSize) {
+					entries.add(key);
+					entries.add(offsets.get(i));
+				}
+			}
+		});
+		// Mark the index as empty first, so a crash in the middle
+		// of this just makes the whole index get built again
+		channel.write(ByteBuffer.allocate(HEADER_SIZE).putLong(0).flip(), 0);
+		channel.truncate(HEADER_SIZE);
+		fileEnd = HEADER_SIZE;
+		postingSlots.clear();
+		postings.clear();
+		write(entries, indexedSize);
+	}
+
+	/**
+	 * @param entries Every new entry, as {@code key, offset} pairs one after another.
+	 */
+	private void write(LongList entries, long newIndexedSize) {
+		ByteBuffer buffer = ByteBuffer.allocate(entries.size() / 2 * ENTRY_SIZE);
+		for (int i = 0; i < entries.size(); i += 2) {
+			buffer.putLong(entries.get(i)).putLong(entries.get(i + 1));
+			addPosting(entries.get(i), entries.get(i + 1));
+		}
+		buffer.flip();
+		try {
+			// The entries go first, since the header is what marks them as indexed
+			while (buffer.hasRemaining()) {
+				fileEnd += channel.write(buffer, fileEnd);
+			}
+			// Make sure the entries are on the disk before the header says they're there,
+			// otherwise a power loss could leave the header pointing at holes
+			if (buffer.limit() > 0) {
+				channel.force(false);
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putLong(newIndexedSize).flip();
+			channel.write(header, 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(STR."Failed to write to log index '\{path}'!", e);
+		}
+		indexedSize = newIndexedSize;
+	}
+
+	private LongList postingsOf(long key) {
+		long slot = postingSlots.get(key, -1);
+		return (slot >= 0) ? postings.get((int) slot) : null;
+	}
+
+	private void addPosting(long key, long offset) {
+		LongList offsets = postingsOf(key);
+		if (offsets == null) {
+			offsets = new LongList(4);
+			postingSlots.put(key, postings.size());
+			postings.add(offsets);
+		}
+		// Offsets are always added in order, so this also keeps out duplicates
+		if (offsets.isEmpty() || offsets.getLast() < offset) {
+			offsets.add(offset);
+		}
+	}
+}
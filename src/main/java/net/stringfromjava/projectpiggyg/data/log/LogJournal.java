@@ -0,0 +1,394 @@
+package net.stringfromjava.projectpiggyg.data.log;
+
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import net.stringfromjava.projectpiggyg.util.data.PathUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An append-only journal of logs, where every log is stored as a single
+ * line of JSON (also known as {@code JSONL}).
+ * <p>
+ * Unlike the old {@code .json} log files, nothing that was already written is ever
+ * read or rewritten when a new log is added. Each new log is written with one
+ * positional write at the end of the file, no matter how big the journal gets.
+ */
+public final class LogJournal implements Closeable {
+
+	private static final Map<Path, LogJournal> openJournals = new ConcurrentHashMap<>();
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final int SINGLE_READ_BUFFER_SIZE = 4 * 1024;
+
+	private final Path path;
+	private final FileChannel channel;
+	private long position;
+
+	/**
+	 * A log inside a journal, along with the byte offset it starts at.
+	 */
+	public record Entry(long offset, JSONObject log) {
+	}
+
+	private LogJournal(Path path) throws IOException {
+		this.path = path;
+		PathUtil.ensurePathExists(path.getParent().toString(), false, false);
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		position = recoverTail();
+	}
+
+	/**
+	 * Gets (or opens) the journal of a log file inside a guild's {@code logs} folder.
+	 *
+	 * @param guildId  The ID of the guild.
+	 * @param fileName The name of the journal file, such as {@code voice.jsonl}.
+	 * @return The journal for the said file.
+	 * @throws UncheckedIOException If the journal could not be opened.
+	 */
+	@NotNull
+	public static LogJournal of(String guildId, String fileName) {
+		return of(Paths.get(PathUtil.fromGuildLogs(guildId, fileName)));
+	}
+
+	/**
+	 * Gets (or opens) the journal at the given path. Every journal is only
+	 * ever opened once, so every caller shares the same instance.
+	 *
+	 * @param path The path of the journal file.
+	 * @return The journal for the said file.
+	 * @throws UncheckedIOException If the journal could not be opened.
+	 */
+	@NotNull
+	public static LogJournal of(Path path) {
+		return openJournals.computeIfAbsent(path.toAbsolutePath(), p -> {
+			try {
+				return new LogJournal(p);
+			} catch (IOException e) {
+				throw new UncheckedIOException(STR."Failed to open log journal '\{p}'!", e);
+			}
+		});
+	}
+
+	/**
+	 * Closes every journal that belongs to a guild. This should be
+	 * called before a guild's folder gets deleted.
+	 *
+	 * @param guildId The ID of the guild.
+	 */
+	public static void closeGuild(String guildId) {
+		Path guildFolder = Paths.get(PathUtil.fromGuildFolder(guildId)).toAbsolutePath();
+		openJournals.values().removeIf(journal -> {
+			if (journal.path.startsWith(guildFolder)) {
+				journal.close();
+				return true;
+			}
+			return false;
+		});
+	}
+
+	/**
+	 * Closes every journal that is currently open.
+	 */
+	public static void closeAll() {
+		openJournals.values().forEach(LogJournal::close);
+		openJournals.clear();
+	}
+
+	/**
+	 * Adds a new log to the end of {@code this} journal.
+	 *
+	 * @param log The log to add.
+	 * @return The byte offset the log was written at.
+	 * @throws UncheckedIOException If the log could not be written.
+	 */
+	public long append(@NotNull JSONObject log) {
+		return appendAll(List.of(log))[0];
+	}
+
+	/**
+	 * Adds multiple logs to the end of {@code this} journal with a single write.
+	 *
+	 * @param logs The logs to add, in order.
+	 * @return The byte offset that each log was written at, in the same order as {@code logs}.
+	 * @throws UncheckedIOException If the logs could not be written.
+	 */
+	public long[] appendAll(@NotNull List<JSONObject> logs) {
+		long[] relativeOffsets = new long[logs.size()];
+		ByteArrayOutputStream lines = new ByteArrayOutputStream();
+		for (int i = 0; i < logs.size(); i++) {
+			relativeOffsets[i] = lines.size();
+			lines.writeBytes(STR."\{logs.get(i).toString()}\n".getBytes(StandardCharsets.UTF_8));
+		}
+
+		synchronized (this) {
+			long offset = position;
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+				long writeAt = offset;
+				while (buffer.hasRemaining()) {
+					writeAt += channel.write(buffer, writeAt);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(STR."Failed to append to log journal '\{path}'!", e);
+			}
+			position += lines.size();
+			for (int i = 0; i < relativeOffsets.length; i++) {
+				relativeOffsets[i] += offset;
+			}
+			return relativeOffsets;
+		}
+	}
+
+	/**
+	 * Forces every log written to {@code this} journal onto the disk.
+	 *
+	 * @throws UncheckedIOException If the journal could not be synced.
+	 */
+	public synchronized void force() {
+		try {
+			channel.force(false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(STR."Failed to sync log journal '\{path}'!", e);
+		}
+	}
+
+	/**
+	 * Cuts off everything in {@code this} journal after the given size.
+	 *
+	 * @param size The new size of the journal in bytes.
+	 * @throws UncheckedIOException If the journal could not be truncated.
+	 */
+	public synchronized void truncate(long size) {
+		if (size >= position) {
+			return;
+		}
+		try {
+			channel.truncate(size);
+			position = size;
+		} catch (IOException e) {
+			throw new UncheckedIOException(STR."Failed to truncate log journal '\{path}'!", e);
+		}
+	}
+
+	/**
+	 * Reads a single log that starts at the given byte offset.
+	 *
+	 * @param offset The offset that was returned by {@link #append(JSONObject)}.
+	 * @return The log, or {@code null} if there isn't a valid log at the said offset.
+	 */
+	@Nullable
+	public JSONObject read(long offset) {
+		Iterator<Entry> iterator = new RecordIterator(offset, size(), SINGLE_READ_BUFFER_SIZE);
+		return iterator.hasNext() ? iterator.next().log() : null;
+	}
+
+	/**
+	 * Lazily streams every log inside {@code this} journal, from oldest to newest.
+	 * Only logs that were written before this method was called are included.
+	 * <p>
+	 * NOTE: Lines that are not valid JSON are skipped with a warning.
+	 *
+	 * @return A {@link java.util.stream.Stream} of every log.
+	 */
+	@NotNull
+	public Stream<JSONObject> stream() {
+		return entries(0).map(Entry::log);
+	}
+
+	/**
+	 * Lazily streams every log inside {@code this} journal that starts at or after the given
+	 * byte offset, along with the offset of each one. Only logs that were written before this
+	 * method was called are included.
+	 *
+	 * @param start The byte offset to start at. This has to be the start of a line.
+	 * @return A {@link java.util.stream.Stream} of every log after {@code start}.
+	 */
+	@NotNull
+	public Stream<Entry> entries(long start) {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(new RecordIterator(start, size(), READ_BUFFER_SIZE), Spliterator.ORDERED | Spliterator.NONNULL),
+				false
+		);
+	}
+
+	/**
+	 * Gets the size of {@code this} journal in bytes.
+	 *
+	 * @return The size of the journal.
+	 */
+	public synchronized long size() {
+		return position;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Closes {@code this} journal and deletes its file, such as when a partition of a
+	 * {@link PartitionedLogJournal} gets dropped.
+	 */
+	synchronized void delete() {
+		openJournals.remove(path, this);
+		close();
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.WARN,
+					() -> STR."Failed to delete log journal '\{path}', got this error: '\{e.getMessage()}'"
+			);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.WARN,
+					() -> STR."Failed to close log journal '\{path}', got this error: '\{e.getMessage()}'"
+			);
+		}
+	}
+
+	/**
+	 * Makes sure the journal ends with a complete line. If PiggyG was
+	 * killed in the middle of a write, the broken last line is cut off.
+	 */
+	private long recoverTail() throws IOException {
+		long size = channel.size();
+		long end = size;
+		ByteBuffer single = ByteBuffer.allocate(1);
+		while (end > 0) {
+			single.clear();
+			channel.read(single, end - 1);
+			if (single.get(0) == '\n') {
+				break;
+			}
+			end--;
+		}
+		if (end != size) {
+			long cutOff = size - end;
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.WARN,
+					() -> STR."Log journal '\{path}' had an incomplete last line, cutting off \{cutOff} bytes."
+			);
+			channel.truncate(end);
+		}
+		return end;
+	}
+
+	/**
+	 * Iterator that reads logs line by line in chunks, without
+	 * loading the entire journal into memory.
+	 */
+	private final class RecordIterator implements Iterator<Entry> {
+
+		private final long end;
+		private final ByteBuffer buffer;
+		private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+		private long readPosition;
+		private long lineStart;
+		private Entry next;
+
+		private RecordIterator(long start, long end, int bufferSize) {
+			this.end = end;
+			readPosition = start;
+			buffer = ByteBuffer.allocate(bufferSize);
+			buffer.flip();
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				String rawLine = readLine();
+				if (rawLine == null) {
+					return false;
+				}
+				if (rawLine.isBlank()) {
+					continue;
+				}
+				try {
+					next = new Entry(lineStart, new JSONObject(rawLine));
+				} catch (JSONException e) {
+					LoggerUtil.log(
+							LogCategory.GUILD_LOGS,
+							LogType.WARN,
+							() -> STR."Found a corrupted log inside journal '\{path}'. Skipping..."
+					);
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public Entry next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Entry toReturn = next;
+			next = null;
+			return toReturn;
+		}
+
+		@Nullable
+		private String readLine() {
+			line.reset();
+			lineStart = readPosition - buffer.remaining();
+			while (true) {
+				if (!buffer.hasRemaining()) {
+					if (readPosition >= end) {
+						return null;
+					}
+					buffer.clear();
+					buffer.limit((int) Math.min(buffer.capacity(), end - readPosition));
+					try {
+						int read = channel.read(buffer, readPosition);
+						if (read <= 0) {
+							return null;
+						}
+						readPosition += read;
+					} catch (IOException e) {
+						throw new UncheckedIOException(STR."Failed to read log journal '\{path}'!", e);
+					}
+					buffer.flip();
+				}
+				byte b = buffer.get();
+				if (b == '\n') {
+					return line.toString(StandardCharsets.UTF_8);
+				}
+				line.write(b);
+			}
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package net.stringfromjava.projectpiggyg.data.log;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * How much time each partition of a {@link PartitionedLogJournal} covers.
+ * Windows start and end at midnight in the system's time zone.
+ */
+enum LogPartitionWindow {
+	DAY,
+	WEEK,
+	MONTH,
+	YEAR;
+
+	/**
+	 * Gets when the window that a time is in ends.
+	 *
+	 * @param millis The time (in epoch milliseconds).
+	 * @return The time (in epoch milliseconds) the next window starts at.
+	 */
+	long endOf(long millis) {
+		LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+		LocalDate nextStart = switch (this) {
+			case DAY -> date.plusDays(1);
+			case WEEK -> date.with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+			case MONTH -> date.withDayOfMonth(1).plusMonths(1);
+			case YEAR -> date.withDayOfYear(1).plusYears(1);
+		};
+		return nextStart.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * Gets the day the window that a time is in starts on.
+	 *
+	 * @param millis The time (in epoch milliseconds).
+	 * @return The first day of the window.
+	 */
+	LocalDate startOf(long millis) {
+		LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+		return switch (this) {
+			case DAY -> date;
+			case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+			case MONTH -> date.withDayOfMonth(1);
+			case YEAR -> date.withDayOfYear(1);
+		};
+	}
+}
@@ -0,0 +1,646 @@
+package net.stringfromjava.projectpiggyg.data.log;
+
+import net.stringfromjava.projectpiggyg.util.app.AppUtil;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
+import net.stringfromjava.projectpiggyg.util.app.LogType;
+import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
+import net.stringfromjava.projectpiggyg.util.data.FileUtil;
+import net.stringfromjava.projectpiggyg.util.data.PathUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A {@link LogJournal} that's split into one journal (partition) for every window
+ * of time, such as one for every month.
+ * <p>
+ * Each partition remembers the earliest and latest time of the logs inside it, so looking up
+ * logs from a range of time skips every partition that can't have any, without opening them.
+ * Old logs are deleted by dropping whole partitions, instead of rewriting a huge file.
+ * <p>
+ * A log goes into the newest partition, unless it's from after the end of that partition's
+ * window, which starts a new partition. Logs are never added to an older partition, so every
+ * partition only ever grows at its end, just like a single journal.
+ * <p>
+ * Offsets work just like the ones of a single journal (they only ever go up as logs are added),
+ * with the partition's number in the upper bits and the offset inside the partition in the lower
+ * bits. The journal that existed before partitions were added becomes the first partition (with
+ * the number 0), so every offset that was saved before (like in indexes and checkpoints) still
+ * points to the same log.
+ * <p>
+ * The partitions and their times are kept in a manifest next to the journals. If the manifest
+ * is behind its partitions (for example, if PiggyG crashed), the logs it's missing are read again
+ * the next time the journal is opened.
+ */
+public final class PartitionedLogJournal implements Closeable {
+
+	private static final Map<Path, PartitionedLogJournal> openJournals = new ConcurrentHashMap<>();
+
+	// Leaves 1 TiB for each partition, and enough partition numbers for thousands of years of days
+	private static final int PARTITION_SHIFT = 40;
+	private static final long LOCAL_OFFSET_MASK = (1L << PARTITION_SHIFT) - 1;
+	private static final String MANIFEST_EXTENSION = ".partitions.json";
+	private static final DateTimeFormatter PARTITION_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+	private final Path basePath;
+	private final Path manifestPath;
+	private final String fileStem;
+	private final String fileExtension;
+	private final LogPartitionWindow window;
+
+	// Everything below is guarded by "this"
+	private final List<Partition> partitions = new ArrayList<>();
+	private int unforcedSeq;
+
+	/**
+	 * A single partition of the journal.
+	 */
+	private static final class Partition {
+
+		private final int seq;
+		private final String fileName;
+		private final long end;
+		private final LogJournal journal;
+		private long minEpoch = Long.MAX_VALUE;
+		private long maxEpoch = Long.MIN_VALUE;
+		private long scannedSize;
+
+		private Partition(int seq, String fileName, long end, LogJournal journal) {
+			this.seq = seq;
+			this.fileName = fileName;
+			this.end = end;
+			this.journal = journal;
+		}
+
+		private void track(JSONObject log) {
+			long epoch = TimeRange.epochOf(log);
+			if (epoch != TimeRange.NO_EPOCH) {
+				minEpoch = Math.min(minEpoch, epoch);
+				maxEpoch = Math.max(maxEpoch, epoch);
+			}
+		}
+
+		private boolean overlaps(TimeRange range) {
+			// Partitions without any logs that have a time never have a log in a range
+			return range.isAll() || (minEpoch <= maxEpoch && range.overlaps(minEpoch, maxEpoch));
+		}
+
+		/**
+		 * @return The latest time of any log inside {@code this} partition. If none of them have
+		 * a time, then the end of its window is used, since every log was added before then.
+		 */
+		private long latestTime() {
+			return (minEpoch <= maxEpoch) ? maxEpoch : end;
+		}
+	}
+
+	private PartitionedLogJournal(Path basePath) {
+		this.basePath = basePath;
+		String fileName = basePath.getFileName().toString();
+		int extensionIndex = fileName.lastIndexOf('.');
+		fileStem = (extensionIndex > 0) ? fileName.substring(0, extensionIndex) : fileName;
+		fileExtension = (extensionIndex > 0) ? fileName.substring(extensionIndex) : "";
+		manifestPath = basePath.resolveSibling(fileStem + MANIFEST_EXTENSION);
+		window = readWindow();
+		loadManifest();
+	}
+
+	/**
+	 * Gets (or opens) the partitioned journal of a log file inside a guild's {@code logs} folder.
+	 *
+	 * @param guildId  The ID of the guild.
+	 * @param fileName The name of the first partition, such as {@code voice.jsonl}. Every other
+	 *                 partition is named after it.
+	 * @return The journal for the said file.
+	 * @throws UncheckedIOException If the journal could not be opened.
+	 */
+	@NotNull
+	public static PartitionedLogJournal of(String guildId, String fileName) {
+		return openJournals.computeIfAbsent(
+				Paths.get(PathUtil.fromGuildLogs(guildId, fileName)).toAbsolutePath(),
+				PartitionedLogJournal::new
+		);
+	}
+
+	/**
+	 * Closes every partitioned journal that belongs to a guild. This
+	 * should be called before a guild's folder gets deleted.
+	 *
+	 * @param guildId The ID of the guild.
+	 */
+	public static void closeGuild(String guildId) {
+		Path guildFolder = Paths.get(PathUtil.fromGuildFolder(guildId)).toAbsolutePath();
+		openJournals.values().removeIf(journal -> {
+			if (journal.basePath.startsWith(guildFolder)) {
+				journal.close();
+				return true;
+			}
+			return false;
+		});
+	}
+
+	/**
+	 * Saves the manifest of and closes every partitioned journal that is currently open.
+	 */
+	public static void closeAll() {
+		openJournals.values().forEach(PartitionedLogJournal::close);
+		openJournals.clear();
+	}
+
+	/**
+	 * Adds multiple logs to the end of {@code this} journal. Logs that go into the
+	 * same partition are written with a single write.
+	 *
+	 * @param logs The logs to add, in order.
+	 * @return The offset that each log was written at, in the same order as {@code logs}.
+	 * @throws UncheckedIOException If the logs could not be written.
+	 */
+	public synchronized long[] appendAll(@NotNull List<JSONObject> logs) {
+		long now = System.currentTimeMillis();
+		long[] offsets = new long[logs.size()];
+		int runStart = 0;
+		while (runStart < logs.size()) {
+			Partition partition = partitionFor(timeOf(logs.get(runStart), now));
+			int runEnd = runStart + 1;
+			while (runEnd < logs.size() && timeOf(logs.get(runEnd), now) < partition.end) {
+				runEnd++;
+			}
+			long[] localOffsets = partition.journal.appendAll(logs.subList(runStart, runEnd));
+			for (int i = runStart; i < runEnd; i++) {
+				offsets[i] = toOffset(partition.seq, localOffsets[i - runStart]);
+				partition.track(logs.get(i));
+			}
+			partition.scannedSize = partition.journal.size();
+			runStart = runEnd;
+		}
+		return offsets;
+	}
+
+	/**
+	 * Forces every log written to {@code this} journal onto the disk, then saves the manifest.
+	 *
+	 * @throws UncheckedIOException If the journal could not be synced.
+	 */
+	public synchronized void force() {
+		for (Partition partition : partitions) {
+			if (partition.seq >= unforcedSeq) {
+				partition.journal.force();
+			}
+		}
+		unforcedSeq = partitions.getLast().seq;
+		saveManifest();
+	}
+
+	/**
+	 * Cuts off everything in {@code this} journal after the given size. Any
+	 * partition that starts after the given size is deleted.
+	 *
+	 * @param size The new size of the journal, which was returned by {@link #size()}.
+	 * @throws UncheckedIOException If the journal could not be truncated.
+	 */
+	public synchronized void truncate(long size) {
+		int seq = seqOf(size);
+		while (partitions.size() > 1 && partitions.getLast().seq > seq) {
+			partitions.removeLast().journal.delete();
+		}
+		Partition last = partitions.getLast();
+		if (last.seq == seq) {
+			last.journal.truncate(localOffsetOf(size));
+		} else if (last.seq > seq) {
+			// Only the first partition is left, and all of it came after the given size
+			last.journal.truncate(0);
+		}
+		last.scannedSize = Math.min(last.scannedSize, last.journal.size());
+		unforcedSeq = Math.min(unforcedSeq, last.seq);
+		saveManifest();
+	}
+
+	/**
+	 * Reads a single log that starts at the given offset.
+	 *
+	 * @param offset The offset that was returned by {@link #appendAll(List)}.
+	 * @return The log, or {@code null} if there isn't a valid log at the said offset
+	 * (such as when its partition was dropped).
+	 */
+	@Nullable
+	public JSONObject read(long offset) {
+		Partition partition = partitionOf(offset);
+		return (partition != null) ? partition.journal.read(localOffsetOf(offset)) : null;
+	}
+
+	/**
+	 * Checks if the log at an offset might be in a range of time, without reading it.
+	 *
+	 * @param offset The offset of the log.
+	 * @param range  The range of time.
+	 * @return {@code false} if the log's partition doesn't have any logs in the range.
+	 */
+	public boolean mightBeIn(long offset, @NotNull TimeRange range) {
+		Partition partition = partitionOf(offset);
+		if (partition == null) {
+			return false;
+		}
+		synchronized (this) {
+			return partition.overlaps(range);
+		}
+	}
+
+	/**
+	 * Lazily streams every log inside {@code this} journal, from oldest to newest.
+	 * Only logs that were written before this method was called are included.
+	 *
+	 * @return A {@link java.util.stream.Stream} of every log.
+	 */
+	@NotNull
+	public Stream<JSONObject> stream() {
+		return entries(0, TimeRange.ALL).map(LogJournal.Entry::log);
+	}
+
+	/**
+	 * Lazily streams every log inside {@code this} journal from the partitions that
+	 * might have logs in a range of time, from oldest to newest. Only logs that were
+	 * written before this method was called are included.
+	 * <p>
+	 * NOTE: Partitions that overlap the range are read whole, so logs outside of the range
+	 * can still be included.
+	 *
+	 * @param range The range of time.
+	 * @return A {@link java.util.stream.Stream} of the logs.
+	 */
+	@NotNull
+	public Stream<JSONObject> stream(@NotNull TimeRange range) {
+		return entries(0, range).map(LogJournal.Entry::log);
+	}
+
+	/**
+	 * Lazily streams every log inside {@code this} journal that starts at or after the given
+	 * offset, along with the offset of each one. Only logs that were written before this
+	 * method was called are included.
+	 *
+	 * @param start The offset to start at. This has to be the start of a log.
+	 * @return A {@link java.util.stream.Stream} of every log after {@code start}.
+	 */
+	@NotNull
+	public Stream<LogJournal.Entry> entries(long start) {
+		return entries(start, TimeRange.ALL);
+	}
+
+	/**
+	 * Lazily streams every log inside {@code this} journal that starts at or after the given
+	 * offset, from the partitions that might have logs in a range of time.
+	 *
+	 * @param start The offset to start at. This has to be the start of a log.
+	 * @param range The range of time.
+	 * @return A {@link java.util.stream.Stream} of the logs after {@code start}, along with their offsets.
+	 */
+	@NotNull
+	public Stream<LogJournal.Entry> entries(long start, @NotNull TimeRange range) {
+		List<Partition> toRead = new ArrayList<>();
+		long end;
+		synchronized (this) {
+			end = size();
+			for (Partition partition : partitions) {
+				if (partition.seq >= seqOf(start) && partition.overlaps(range)) {
+					toRead.add(partition);
+				}
+			}
+		}
+		int startSeq = seqOf(start);
+		int endSeq = seqOf(end);
+		long endLocalOffset = localOffsetOf(end);
+		return toRead.stream().flatMap(partition -> {
+			long from = (partition.seq == startSeq) ? localOffsetOf(start) : 0;
+			Stream<LogJournal.Entry> entries = partition.journal.entries(from);
+			if (partition.seq == endSeq) {
+				// Leave out anything added to the newest partition after this was called
+				entries = entries.takeWhile(entry -> entry.offset() < endLocalOffset);
+			}
+			return entries.map(entry -> new LogJournal.Entry(toOffset(partition.seq, entry.offset()), entry.log()));
+		});
+	}
+
+	/**
+	 * Gets the size of {@code this} journal, which is the offset the next log will be written
+	 * at if it goes into the newest partition.
+	 *
+	 * @return The size of the journal.
+	 */
+	public synchronized long size() {
+		Partition last = partitions.getLast();
+		return toOffset(last.seq, last.journal.size());
+	}
+
+	/**
+	 * @return The offset of the first log that can still be read, since every log
+	 * before it was in a partition that was dropped.
+	 */
+	public synchronized long firstOffset() {
+		return toOffset(partitions.getFirst().seq, 0);
+	}
+
+	/**
+	 * @return How many partitions {@code this} journal has.
+	 */
+	public synchronized int getPartitionCount() {
+		return partitions.size();
+	}
+
+	/**
+	 * Deletes every partition that only has logs from before the given time, starting
+	 * with the oldest one. The newest partition is never deleted.
+	 *
+	 * @param cutoffMillis The time (in epoch milliseconds) every log has to be from before
+	 *                     for its partition to be dropped.
+	 * @param onDrop       Called with every log of a partition right before the partition is deleted.
+	 * @return How many partitions were dropped.
+	 */
+	public synchronized int dropPartitionsBefore(long cutoffMillis, @NotNull Consumer<JSONObject> onDrop) {
+		int dropped = 0;
+		// Only ever drop from the start, so the offsets that are left never have a gap
+		while (partitions.size() > 1 && partitions.getFirst().latestTime() < cutoffMillis) {
+			Partition partition = partitions.removeFirst();
+			try (Stream<JSONObject> logs = partition.journal.stream()) {
+				logs.forEach(onDrop);
+			}
+			partition.journal.delete();
+			dropped++;
+		}
+		if (dropped > 0) {
+			saveManifest();
+		}
+		return dropped;
+	}
+
+	@Override
+	public synchronized void close() {
+		saveManifest();
+	}
+
+	/**
+	 * Copies every log inside an old {@code .json} log file (which is one big
+	 * {@link org.json.JSONArray}) into a journal. The old file is left where it is, so the caller
+	 * can record that it was migrated before calling {@link #finishLegacyMigration(File)}.
+	 *
+	 * @param legacyFile The old {@code .json} log file.
+	 * @param journal    The journal to move the logs into.
+	 * @param converter  Converts each element of the old array into a log. If it
+	 *                   returns {@code null}, then the element is skipped.
+	 * @return How many logs were migrated, or {@code -1} if the old file couldn't be read.
+	 */
+	public static int migrateLegacyLog(@NotNull File legacyFile, @NotNull PartitionedLogJournal journal, @NotNull Function<Object, JSONObject> converter) {
+		if (!legacyFile.isFile()) {
+			return -1;
+		}
+
+		JSONArray legacyLogs;
+		try {
+			String data = FileUtil.getFileData(legacyFile);
+			legacyLogs = data.isBlank() ? new JSONArray() : new JSONArray(data);
+		} catch (JSONException e) {
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.ERROR,
+					() -> STR."Could not migrate old log file '\{legacyFile.getPath()}', it isn't a valid JSON array!"
+			);
+			return -1;
+		}
+
+		List<JSONObject> converted = new ArrayList<>();
+		for (Object log : legacyLogs) {
+			JSONObject logJson = converter.apply(log);
+			if (logJson != null) {
+				converted.add(logJson);
+			}
+		}
+		if (!converted.isEmpty()) {
+			journal.appendAll(converted);
+			journal.force();
+		}
+		return converted.size();
+	}
+
+	/**
+	 * Renames an old {@code .json} log file with a {@code .migrated} extension, so it never gets migrated again.
+	 *
+	 * @param legacyFile The old {@code .json} log file, whose logs were already migrated.
+	 */
+	public static void finishLegacyMigration(@NotNull File legacyFile) {
+		File renamed = new File(STR."\{legacyFile.getPath()}.migrated");
+		if (!legacyFile.renameTo(renamed)) {
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.WARN,
+					() -> STR."Migrated old log file '\{legacyFile.getPath()}', but couldn't rename it!"
+			);
+		}
+	}
+
+	/**
+	 * Gets the partition a log from the given time goes into, starting a new one if it's
+	 * from after the end of the newest partition's window.
+	 */
+	private Partition partitionFor(long time) {
+		Partition last = partitions.getLast();
+		if (time < last.end) {
+			return last;
+		}
+		int seq = last.seq + 1;
+		String fileName = STR."\{fileStem}.\{seq}.\{window.startOf(time).format(PARTITION_DATE_FORMATTER)}\{fileExtension}";
+		Partition partition = new Partition(seq, fileName, window.endOf(time), LogJournal.of(basePath.resolveSibling(fileName)));
+		// A file with this name can only be left over from a crash right after it was
+		// made, and none of its logs were ever part of the journal
+		partition.journal.truncate(0);
+		partitions.add(partition);
+		// Save the new partition right away so truncate() always knows about it
+		saveManifest();
+		return partition;
+	}
+
+	private Partition partitionOf(long offset) {
+		int seq = seqOf(offset);
+		synchronized (this) {
+			// Partitions are sorted by their number, so this can be a binary search
+			int low = 0;
+			int high = partitions.size() - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int middleSeq = partitions.get(middle).seq;
+				if (middleSeq < seq) {
+					low = middle + 1;
+				} else if (middleSeq > seq) {
+					high = middle - 1;
+				} else {
+					return partitions.get(middle);
+				}
+			}
+			return null;
+		}
+	}
+
+	private static long timeOf(JSONObject log, long now) {
+		long epoch = TimeRange.epochOf(log);
+		return (epoch != TimeRange.NO_EPOCH) ? epoch : now;
+	}
+
+	private static long toOffset(int seq, long localOffset) {
+		return ((long) seq << PARTITION_SHIFT) | localOffset;
+	}
+
+	private static int seqOf(long offset) {
+		return (int) (offset >>> PARTITION_SHIFT);
+	}
+
+	private static long localOffsetOf(long offset) {
+		return offset & LOCAL_OFFSET_MASK;
+	}
+
+	private static LogPartitionWindow readWindow() {
+		String windowName = AppUtil.getConfigProperty("log_partition_window", "MONTH");
+		try {
+			return LogPartitionWindow.valueOf(windowName.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.WARN,
+					() -> STR."Unknown log partition window '\{windowName}', partitioning logs by month instead."
+			);
+			return LogPartitionWindow.MONTH;
+		}
+	}
+
+	/**
+	 * Loads every partition from the manifest, and then reads the logs that the manifest is
+	 * missing the times of. If there isn't a manifest yet, then the journal from before partitions
+	 * were added becomes the first partition.
+	 */
+	private void loadManifest() {
+		File manifestFile = manifestPath.toFile();
+		if (manifestFile.isFile()) {
+			try {
+				JSONArray savedPartitions = new JSONObject(FileUtil.getFileData(manifestFile)).getJSONArray("partitions");
+				for (int i = 0; i < savedPartitions.length(); i++) {
+					JSONObject saved = savedPartitions.getJSONObject(i);
+					String fileName = saved.getString("file");
+					Partition partition = new Partition(saved.getInt("seq"), fileName, saved.getLong("end"), LogJournal.of(basePath.resolveSibling(fileName)));
+					partition.minEpoch = saved.optLong("min", Long.MAX_VALUE);
+					partition.maxEpoch = saved.optLong("max", Long.MIN_VALUE);
+					partition.scannedSize = Math.min(saved.optLong("scanned", 0), partition.journal.size());
+					partitions.add(partition);
+				}
+			} catch (JSONException e) {
+				LoggerUtil.log(
+						LogCategory.GUILD_LOGS,
+						LogType.WARN,
+						() -> STR."The partition manifest '\{manifestPath}' is corrupted! Finding every partition again..."
+				);
+				partitions.clear();
+			}
+		}
+		if (partitions.isEmpty()) {
+			findPartitions();
+		}
+
+		boolean scanned = false;
+		for (Partition partition : partitions) {
+			if (partition.scannedSize >= partition.journal.size()) {
+				continue;
+			}
+			try (Stream<LogJournal.Entry> entries = partition.journal.entries(partition.scannedSize)) {
+				entries.forEach(entry -> partition.track(entry.log()));
+			}
+			partition.scannedSize = partition.journal.size();
+			scanned = true;
+		}
+		unforcedSeq = partitions.getFirst().seq;
+		if (scanned || !manifestFile.isFile()) {
+			saveManifest();
+		}
+	}
+
+	/**
+	 * Finds every partition from the names of the files next to the first partition. The time of
+	 * every log has to be read again after this, since only the manifest has the times.
+	 */
+	private void findPartitions() {
+		List<Partition> found = new ArrayList<>();
+		String prefix = STR."\{fileStem}.";
+		try (Stream<Path> files = Files.list(basePath.getParent())) {
+			for (Path file : files.toList()) {
+				String fileName = file.getFileName().toString();
+				if (fileName.length() <= prefix.length() + fileExtension.length()
+						|| !fileName.startsWith(prefix)
+						|| !fileName.endsWith(fileExtension)) {
+					continue;
+				}
+				// Partitions after the first one are named "<stem>.<number>.<start date><extension>"
+				String[] parts = fileName.substring(prefix.length(), fileName.length() - fileExtension.length()).split("\\.");
+				if (parts.length != 2) {
+					continue;
+				}
+				try {
+					int seq = Integer.parseInt(parts[0]);
+					long start = LocalDate.parse(parts[1], PARTITION_DATE_FORMATTER).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+					found.add(new Partition(seq, fileName, window.endOf(start), LogJournal.of(file)));
+				} catch (NumberFormatException | DateTimeParseException e) {
+					// Not a partition, just a file with a similar name
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(STR."Failed to look for the partitions of log journal '\{basePath}'!", e);
+		}
+		found.sort(Comparator.comparingInt(partition -> partition.seq));
+		// The first partition always exists, since it's the journal from before partitions were added
+		partitions.add(new Partition(0, basePath.getFileName().toString(), window.endOf(System.currentTimeMillis()), LogJournal.of(basePath)));
+		partitions.addAll(found);
+	}
+
+	private void saveManifest() {
+		JSONArray savedPartitions = new JSONArray();
+		for (Partition partition : partitions) {
+			savedPartitions.put(new JSONObject()
+					.put("seq", partition.seq)
+					.put("file", partition.fileName)
+					.put("end", partition.end)
+					.put("min", partition.minEpoch)
+					.put("max", partition.maxEpoch)
+					.put("scanned", partition.scannedSize));
+		}
+		// Write the manifest to a temporary file first so a
+		// crash can never leave behind half of a manifest
+		try {
+			Path tempPath = manifestPath.resolveSibling(STR."\{manifestPath.getFileName()}.tmp");
+			Files.writeString(tempPath, new JSONObject().put("partitions", savedPartitions).toString());
+			Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LoggerUtil.log(
+					LogCategory.GUILD_LOGS,
+					LogType.WARN,
+					() -> STR."Failed to save the partition manifest '\{manifestPath}', got this error: '\{e.getMessage()}'"
+			);
+		}
+	}
+}
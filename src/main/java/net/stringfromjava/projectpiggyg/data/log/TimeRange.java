@@ -0,0 +1,69 @@
+package net.stringfromjava.projectpiggyg.data.log;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+/**
+ * A range of time that logs can be looked up in, which lets whole partitions
+ * of a {@link PartitionedLogJournal} be skipped without reading any of their logs.
+ *
+ * @param fromMillis The earliest time (in epoch milliseconds) in the range, or {@link Long#MIN_VALUE}.
+ * @param toMillis   The time (in epoch milliseconds) the range ends right before, or {@link Long#MAX_VALUE}.
+ */
+public record TimeRange(long fromMillis, long toMillis) {
+
+	/**
+	 * A range that covers all of time, which includes logs that don't have a time.
+	 */
+	public static final TimeRange ALL = new TimeRange(Long.MIN_VALUE, Long.MAX_VALUE);
+
+	/**
+	 * What {@link #epochOf(JSONObject)} returns for logs that don't have a time.
+	 */
+	public static final long NO_EPOCH = Long.MIN_VALUE;
+
+	/**
+	 * Gets when a log was logged, from the {@code epoch} field of its {@code time}.
+	 *
+	 * @param log The log.
+	 * @return The time (in epoch milliseconds) of the log, or {@link #NO_EPOCH} if it
+	 * doesn't have one (like logs from before times were saved with an epoch).
+	 */
+	public static long epochOf(@NotNull JSONObject log) {
+		JSONObject time = log.optJSONObject("time");
+		return (time != null && time.has("epoch")) ? time.optLong("epoch", NO_EPOCH) : NO_EPOCH;
+	}
+
+	/**
+	 * @return If {@code this} range covers all of time.
+	 */
+	public boolean isAll() {
+		return fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE;
+	}
+
+	/**
+	 * Checks if a log is in {@code this} range. Logs without a time are
+	 * only in the range if it covers all of time.
+	 *
+	 * @param log The log to check.
+	 * @return If the log is in the range.
+	 */
+	public boolean contains(@NotNull JSONObject log) {
+		if (isAll()) {
+			return true;
+		}
+		long epoch = epochOf(log);
+		return epoch != NO_EPOCH && epoch >= fromMillis && epoch < toMillis;
+	}
+
+	/**
+	 * Checks if any time between two times (both included) is in {@code this} range.
+	 *
+	 * @param minMillis The earliest time.
+	 * @param maxMillis The latest time.
+	 * @return If the two ranges overlap.
+	 */
+	public boolean overlaps(long minMillis, long maxMillis) {
+		return minMillis < toMillis && maxMillis >= fromMillis;
+	}
+}
@@ -5,6 +5,9 @@ import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
 import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.stringfromjava.projectpiggyg.data.cache.BackfillScheduler;
+import net.stringfromjava.projectpiggyg.data.cache.MessageSegmentStore;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
 import net.stringfromjava.projectpiggyg.util.Constants;
 import net.stringfromjava.projectpiggyg.util.app.LogType;
 import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
@@ -37,6 +40,11 @@ public class JoinLeaveGuildEventListener extends ListenerAdapter {
 	public void onGuildLeave(@NotNull GuildLeaveEvent event) {
 		Guild guild = event.getGuild();
 		String guildFolder = PathUtil.ofAppData("guilds", guild.getId());
+		// Stop caching messages first, so nothing opens the guild's message stores again
+		BackfillScheduler.cancel(guild.getId());
+		GuildUtil.releaseAttachmentBlobs(guild.getId());
+		GuildWriteAheadLog.closeGuild(guild.getId());
+		MessageSegmentStore.closeGuild(guild.getId());
 		PathUtil.deleteFolder(Paths.get(guildFolder));
 	}
 }
@@ -2,20 +2,21 @@ package net.stringfromjava.projectpiggyg.event.guild;
 
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.channel.Channel;
 import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
-import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.data.cache.AttachmentBlobStore;
+import net.stringfromjava.projectpiggyg.data.cache.MessageEditHistory;
+import net.stringfromjava.projectpiggyg.data.cache.MessageSegmentStore;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
 import net.stringfromjava.projectpiggyg.util.app.AppUtil;
 import net.stringfromjava.projectpiggyg.util.data.JsonUtil;
-import net.stringfromjava.projectpiggyg.util.data.FileUtil;
-import net.stringfromjava.projectpiggyg.util.data.PathUtil;
+import net.stringfromjava.projectpiggyg.util.discord.GuildUtil;
 import org.jetbrains.annotations.NotNull;
 import org.json.JSONArray;
-
-import java.io.File;
+import org.json.JSONObject;
 
 /**
  * Event listener class for logging edited and deleted messages on a guild.
@@ -28,29 +29,44 @@ public class MessageCacheGuildEventListener extends ListenerAdapter {
 			return;
 		}
 
-		Message message = event.getMessage();
-		Guild guild = event.getGuild();
-		Channel channel = event.getChannel();
-
-		String msgPath = PathUtil.ensurePathExists(PathUtil.fromGuildBlobCache(
-				guild.getId(),
-				Constants.System.GUILD_BLOB_CACHE_CHANNELS_FOLDER_NAME,
-				channel.getId(),
-				Constants.System.GUILD_BLOB_CACHE_MESSAGES_FOLDER_NAME,
-				message.getId()
-		), false, false);
-
-		File msgJsonFile = FileUtil.createFile("message.json", msgPath, false);
-		FileUtil.writeToFile(msgJsonFile, JsonUtil.createMessageJson(message).toString(2));
-
-		for (Message.Attachment attachment : message.getAttachments()) {
-			FileUtil.convertAttachmentToFile(attachment, msgPath, false);
+		if (!event.isFromGuild()) {
+			return;
 		}
+
+		GuildUtil.cacheMessage(event.getMessage());
 	}
 
 	@Override
 	public void onMessageUpdate(@NotNull MessageUpdateEvent event) {
-		// TODO: Do this later
+		if (!AppUtil.conditionalEnabled("MESSAGE_LOGGING_ALLOWED")) {
+			return;
+		}
+		if (!event.isFromGuild()) {
+			return;
+		}
+
+		Message message = event.getMessage();
+		JSONObject editTime = JsonUtil.getCurrentTimeJson();
+		boolean cached = MessageSegmentStore.updateIfCached(
+				event.getGuild().getId(),
+				event.getChannel().getId(),
+				message.getIdLong(),
+				record -> {
+					if (!MessageEditHistory.recordEdit(record, message.getContentRaw(), editTime)) {
+						return false;
+					}
+					// The new record keeps its own reference to every attachment
+					JSONObject messageInfo = record.getJSONObject("message");
+					AttachmentBlobStore.acquireBlobs(messageInfo.optJSONArray("attachment-blobs", new JSONArray()));
+					return true;
+				}
+		);
+
+		// Messages that aren't cached (like ones that were evicted) are cached now,
+		// so at least any edits made from here on out are kept track of
+		if (!cached) {
+			GuildUtil.cacheMessage(message);
+		}
 	}
 
 	@Override
@@ -58,12 +74,28 @@ public class MessageCacheGuildEventListener extends ListenerAdapter {
 		if (!AppUtil.conditionalEnabled("MESSAGE_LOGGING_ALLOWED")) {
 			return;
 		}
+		if (!event.isFromGuild()) {
+			return;
+		}
+
+		// The channel is kept with each deleted message so the
+		// deleted messages of a single channel can be looked up fast
 		Guild guild = event.getGuild();
-		File deletedMessageLogFile = FileUtil.ensureFileExists(
-				PathUtil.fromGuildLogs(guild.getId(), "deleted-message.json")
-		);
-		JSONArray deletedMessages = new JSONArray(FileUtil.getFileData(deletedMessageLogFile));
-		deletedMessages.put(event.getMessageId());
-		FileUtil.writeToFile(deletedMessageLogFile, deletedMessages.toString(2));
+		JSONObject deletedLog = new JSONObject()
+				.put("id", event.getMessageId())
+				.put("channel", new JSONObject()
+						.put("name", event.getChannel().getName())
+						.put("id", event.getChannel().getId()))
+				.put("time", JsonUtil.getCurrentTimeJson());
+
+		// Copy the cached message into the log, so it's never lost
+		// once the message gets evicted from the message cache
+		JSONObject snapshot = MessageSegmentStore.getIfCached(guild.getId(), event.getChannel().getId(), event.getMessageIdLong());
+		if (snapshot != null) {
+			JSONObject messageInfo = snapshot.optJSONObject("message", new JSONObject());
+			AttachmentBlobStore.acquireBlobs(messageInfo.optJSONArray("attachment-blobs", new JSONArray()));
+			deletedLog.put("snapshot", snapshot);
+		}
+		GuildWriteAheadLog.of(guild.getId()).append(GuildLogType.DELETED_MESSAGE, deletedLog);
 	}
 }
@@ -10,15 +10,12 @@ import net.dv8tion.jda.api.entities.channel.unions.AudioChannelUnion;
 import net.dv8tion.jda.api.events.guild.voice.GuildVoiceGuildDeafenEvent;
 import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
 import net.stringfromjava.projectpiggyg.util.data.JsonUtil;
-import net.stringfromjava.projectpiggyg.util.data.FileUtil;
-import net.stringfromjava.projectpiggyg.util.data.PathUtil;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.File;
-
 /**
  * Event listeners for voice channels on guilds.
  */
@@ -28,8 +25,6 @@ public class VoiceChannelGuildEventListener extends ListenerAdapter {
 	public void onGuildVoiceGuildMute(@NotNull net.dv8tion.jda.api.events.guild.voice.GuildVoiceGuildMuteEvent event) {
 		User affectedUser = event.getMember().getUser();
 		Guild guild = event.getGuild();
-		File voiceActionLogsFile = getGuildLogFile(guild.getId(), "voice-action");
-		JSONArray voiceActionLogs = new JSONArray(FileUtil.getFileData(voiceActionLogsFile));
 
 		event.getGuild().retrieveAuditLogs()
 				.type(ActionType.MEMBER_UPDATE)
@@ -51,14 +46,13 @@ public class VoiceChannelGuildEventListener extends ListenerAdapter {
 					}
 
 					// Create the new log
-					voiceActionLogs.put(generateVoiceChannelActionLog(
+					GuildWriteAheadLog.of(guild.getId()).append(GuildLogType.VOICE_ACTION, generateVoiceChannelActionLog(
 							VoiceActionType.SERVER_MUTE,
 							affectedUser,
 							mutedBy,
 							channel,
 							Boolean.toString(isMuted)
 					));
-					FileUtil.writeToFile(voiceActionLogsFile, voiceActionLogs.toString(2));
 				});
 	}
 
@@ -66,8 +60,6 @@ public class VoiceChannelGuildEventListener extends ListenerAdapter {
 	public void onGuildVoiceGuildDeafen(@NotNull GuildVoiceGuildDeafenEvent event) {
 		User affectedUser = event.getMember().getUser();
 		Guild guild = event.getGuild();
-		File voiceActionLogsFile = getGuildLogFile(guild.getId(), "voice-action");
-		JSONArray voiceActionLogs = new JSONArray(FileUtil.getFileData(voiceActionLogsFile));
 
 		event.getGuild().retrieveAuditLogs()
 				.type(ActionType.MEMBER_UPDATE)
@@ -89,14 +81,13 @@ public class VoiceChannelGuildEventListener extends ListenerAdapter {
 					}
 
 					// Create the new log
-					voiceActionLogs.put(generateVoiceChannelActionLog(
+					GuildWriteAheadLog.of(guild.getId()).append(GuildLogType.VOICE_ACTION, generateVoiceChannelActionLog(
 							VoiceActionType.SERVER_DEAFEN,
 							affectedUser,
 							deafenedBy,
 							channel,
 							Boolean.toString(isDeafened)
 					));
-					FileUtil.writeToFile(voiceActionLogsFile, voiceActionLogs.toString(2));
 				});
 	}
 
@@ -109,8 +100,6 @@ public class VoiceChannelGuildEventListener extends ListenerAdapter {
 		Guild guild = event.getGuild();
 		User user = event.getMember().getUser();
 
-		File voiceLogsFile = getGuildLogFile(guild.getId(), "voice");
-		JSONArray logs = new JSONArray(FileUtil.getFileData(voiceLogsFile));
 		JSONObject logInfo = new JSONObject();
 
 		logInfo.put("member", JsonUtil.createUserInfoJson(user))
@@ -122,19 +111,7 @@ public class VoiceChannelGuildEventListener extends ListenerAdapter {
 						.put("id", (channelLeft != null) ? channelLeft.getId() : "No voice channel left"))
 				.put("time", JsonUtil.getCurrentTimeJson());
 
-		logs.put(logInfo);
-		FileUtil.writeToFile(voiceLogsFile, logs.toString(2));
-	}
-
-	private File getGuildLogFile(String guildId, String name) {
-		return FileUtil.ensureFileExists(
-				PathUtil.fromGuildFolder(
-						guildId,
-						"logs",
-						STR."\{name}.json"
-				),
-				"[]"
-		);
+		GuildWriteAheadLog.of(guild.getId()).append(GuildLogType.VOICE, logInfo);
 	}
 
 	private JSONObject generateVoiceChannelActionLog(VoiceActionType voiceActionType, User to, User from, VoiceChannel channel, String value) {
@@ -73,10 +73,10 @@ public final class Constants {
 		public static final String APP_DATA_DIRECTORY = STR."\{PathUtil.getUserHomePath()}\{OS_PATH_SEPERATOR}.piggyg";
 
 		/**
-		 * The maximum number of log files that can be stored in
-		 * the {@code logs} folder.
+		 * The name of the folder that contains every attachment
+		 * blob, which are shared between all guilds.
 		 */
-		public static final int MAX_LOG_FILES_ALLOWED = 15;
+		public static final String ATTACHMENT_BLOBS_FOLDER_NAME = "blobs";
 
 		/**
 		 * The name of the folder that contains all the logs
@@ -108,6 +108,25 @@ public final class Constants {
 		 */
 		public static final String GUILD_BLOB_CACHE_CHANNELS_FOLDER_NAME = "channels";
 
+		/**
+		 * The name of the folder that contains all the
+		 * memory-mapped message segments for each channel inside each guild.
+		 */
+		public static final String GUILD_BLOB_CACHE_SEGMENTS_FOLDER_NAME = "segments";
+
+		/**
+		 * The file name of the checkpoint that remembers how far the
+		 * message history of each channel inside each guild has been cached.
+		 */
+		public static final String GUILD_BLOB_CACHE_BACKFILL_CHECKPOINT_FILE_NAME = "backfill.checkpoint";
+
+		/**
+		 * The file name of the Bloom filter that remembers which messages
+		 * are cached in each channel inside each guild, while the channel's
+		 * message store isn't open.
+		 */
+		public static final String GUILD_BLOB_CACHE_BLOOM_FILTER_FILE_NAME = "messages.bloom";
+
 		/**
 		 * The name of the folder that contains all the
 		 * logged troll messages that were sent.
@@ -132,27 +151,79 @@ public final class Constants {
 
 		/**
 		 * The file name for what the troll command log
-		 * file is called.
+		 * journal is called.
 		 */
-		public static final String TROLL_LOG_FILE_NAME = "troll.json";
+		public static final String TROLL_LOG_FILE_NAME = "troll.jsonl";
+
+		/**
+		 * The file name for what the old troll command log
+		 * file was called, before it was replaced with a log journal.
+		 */
+		public static final String TROLL_LEGACY_LOG_FILE_NAME = "troll.json";
 
 		/**
 		 * The file name for what the guild voice channel
-		 * joins/leaves logs file is called.
+		 * joins/leaves log journal is called.
+		 */
+		public static final String VOICE_JOINS_LEAVES_LOG_FILE_NAME = "voice.jsonl";
+
+		/**
+		 * The file name for what the old guild voice channel
+		 * joins/leaves logs file was called, before it was replaced
+		 * with a log journal.
 		 */
-		public static final String VOICE_JOINS_LEAVES_LOG_FILE_NAME = "voice.json";
+		public static final String VOICE_JOINS_LEAVES_LEGACY_LOG_FILE_NAME = "voice.json";
 
 		/**
-		 * The file name for what the guild mute/deafen logs file
+		 * The file name for what the guild mute/deafen log journal
 		 * for guilds is called.
 		 */
-		public static final String VOICE_ACTION_LOG_FILE_NAME = "voice-action.json";
+		public static final String VOICE_ACTION_LOG_FILE_NAME = "voice-action.jsonl";
 
 		/**
-		 * The file name for what the deleted message logs file
+		 * The file name for what the old guild mute/deafen logs file
+		 * for guilds was called, before it was replaced with a log journal.
+		 */
+		public static final String VOICE_ACTION_LEGACY_LOG_FILE_NAME = "voice-action.json";
+
+		/**
+		 * The file name for what the deleted message log journal
 		 * for guilds is called.
 		 */
-		public static final String DELETED_MESSAGE_LOG_FILE_NAME = "deleted-message.json";
+		public static final String DELETED_MESSAGE_LOG_FILE_NAME = "deleted-message.jsonl";
+
+		/**
+		 * The file name for what the old deleted message logs file
+		 * for guilds was called, before it was replaced with a log journal.
+		 */
+		public static final String DELETED_MESSAGE_LEGACY_LOG_FILE_NAME = "deleted-message.json";
+
+		/**
+		 * The file name of the write-ahead log that every new guild log
+		 * is written to before it gets added to its log journal.
+		 */
+		public static final String GUILD_WRITE_AHEAD_LOG_FILE_NAME = "wal.jsonl";
+
+		/**
+		 * The file name of the checkpoint for a guild's write-ahead log.
+		 */
+		public static final String GUILD_WRITE_AHEAD_LOG_CHECKPOINT_FILE_NAME = "wal.checkpoint";
+
+		/**
+		 * The file name of the index of voice channel action logs by the
+		 * IDs of the affected and inflicting users.
+		 */
+		public static final String VOICE_ACTION_USER_INDEX_FILE_NAME = "voice-action.user.idx";
+
+		/**
+		 * The file name of the index of voice channel action logs by channel ID.
+		 */
+		public static final String VOICE_ACTION_CHANNEL_INDEX_FILE_NAME = "voice-action.channel.idx";
+
+		/**
+		 * The file name of the index of deleted message logs by channel ID.
+		 */
+		public static final String DELETED_MESSAGE_CHANNEL_INDEX_FILE_NAME = "deleted-message.channel.idx";
 
 		private System() {
 		}
@@ -198,6 +269,27 @@ public final class Constants {
 		 */
 		public static final String MESSAGE_LOGGING_ALLOWED = "MESSAGE_LOGGING_ALLOWED";
 
+		/**
+		 * ID for the conditional {@code OFF_HEAP_MESSAGE_CACHE}, determining if the
+		 * recent messages of each channel are kept outside the Java heap. This keeps
+		 * garbage collection pauses short when PiggyG is in a lot of busy guilds.
+		 */
+		public static final String OFF_HEAP_MESSAGE_CACHE = "OFF_HEAP_MESSAGE_CACHE";
+
+		/**
+		 * ID for the conditional {@code ASYNC_LOGGING}, determining if logs are written
+		 * to the console and the log file by a background thread, instead of by the
+		 * thread that logged them.
+		 */
+		public static final String ASYNC_LOGGING = "ASYNC_LOGGING";
+
+		/**
+		 * ID for the conditional {@code STRUCTURED_LOGGING}, determining if every log is
+		 * also written as a line of JSON (with fields like the guild, channel, command
+		 * and latency of the log) to a separate {@code .jsonl} log file.
+		 */
+		public static final String STRUCTURED_LOGGING = "STRUCTURED_LOGGING";
+
 		private Conditionals() {
 		}
 	}
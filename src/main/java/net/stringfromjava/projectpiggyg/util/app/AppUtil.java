@@ -59,6 +59,45 @@ public final class AppUtil {
 		return conditionals.contains(id);
 	}
 
+	/**
+	 * Gets a setting from the {@code config.properties} file.
+	 *
+	 * @param key          The name of the setting.
+	 * @param defaultValue The value to return if the setting isn't in the config file.
+	 * @return The value of the setting (with whitespace stripped).
+	 */
+	public static String getConfigProperty(String key, String defaultValue) {
+		if (configProperties == null) {
+			return defaultValue;
+		}
+		String value = configProperties.getProperty(key);
+		return (value != null && !value.isBlank()) ? value.trim() : defaultValue;
+	}
+
+	/**
+	 * Gets a number setting from the {@code config.properties} file.
+	 *
+	 * @param key          The name of the setting.
+	 * @param defaultValue The value to return if the setting is missing or isn't a valid number.
+	 * @return The value of the setting.
+	 */
+	public static long getConfigLong(String key, long defaultValue) {
+		String value = getConfigProperty(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			LoggerUtil.log(
+					STR."Config setting '\{key}' has an invalid number '\{value}', using \{defaultValue} instead.",
+					LogType.WARN,
+					false
+			);
+			return defaultValue;
+		}
+	}
+
 	private static void attemptPropertiesLoad(Properties properties, String resourcePath) {
 		try (InputStream in = AppUtil.class.getResourceAsStream(resourcePath)) {
 			properties.load(in);
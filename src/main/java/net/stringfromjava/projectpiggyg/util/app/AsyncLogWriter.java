@@ -0,0 +1,199 @@
+package net.stringfromjava.projectpiggyg.util.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes logs to the console and the log file on a single background thread,
+ * so logging from event and command threads never has to wait on either of them.
+ * <p>
+ * Logs are handed over through a ring buffer of slots that are all created up front. A logging
+ * thread claims the next slot by bumping a counter, fills it in and then publishes it, which is
+ * all just stores to memory. The writer thread takes the published slots in order, formats them
+ * and writes them all in one go to the log files (which are kept open), only flushing once per
+ * batch instead of once per log. If the writer falls so far behind that the ring is full, logging
+ * threads wait for a free slot instead of dropping logs.
+ * <p>
+ * If a log (or a whole batch) can't be written, it's skipped so the writer thread keeps going. If the
+ * writer thread still somehow dies, {@link #publish} says so, and logs are written on the thread that
+ * logs them instead of waiting forever for a slot.
+ */
+final class AsyncLogWriter {
+
+	private static final int CAPACITY = 8192; // Must be a power of two
+	private static final int MASK = CAPACITY - 1;
+	private static final int MAX_BATCH_SIZE = 512;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+	private final Slot[] slots = new Slot[CAPACITY];
+	// The sequence number each slot was last published with, which is how the writer knows it's ready
+	private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+	private final AtomicLong claimed = new AtomicLong();
+	private final Thread writerThread;
+	private volatile long consumed;
+	private volatile boolean writerParked;
+	private volatile boolean running = true;
+
+	AsyncLogWriter() {
+		for (int i = 0; i < CAPACITY; i++) {
+			slots[i] = new Slot();
+			published.set(i, -1);
+		}
+		writerThread = new Thread(this::runWriter, "piggyg-logger");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Hands a log over to the writer thread.
+	 *
+	 * @return {@code false} if the writer thread isn't running anymore, meaning the log has to be written some other way.
+	 */
+	boolean publish(long time, LogCategory category, LogContext context, String info, LogType type, boolean includeDots, boolean emphasis, boolean writeToFile) {
+		if (!writerThread.isAlive()) {
+			return false;
+		}
+		long sequence = claimed.getAndIncrement();
+		// Only happens if the writer is a whole ring behind, like when the console is blocked
+		while (sequence - consumed >= CAPACITY) {
+			if (!writerThread.isAlive()) {
+				return false;
+			}
+			LockSupport.unpark(writerThread);
+			LockSupport.parkNanos(this, FULL_PARK_NANOS);
+		}
+		int index = (int) (sequence & MASK);
+		Slot slot = slots[index];
+		slot.time = time;
+		slot.category = category;
+		slot.context = context;
+		slot.info = info;
+		slot.type = type;
+		slot.includeDots = includeDots;
+		slot.emphasis = emphasis;
+		slot.writeToFile = writeToFile;
+		published.set(index, sequence);
+		if (writerParked) {
+			LockSupport.unpark(writerThread);
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until every log published before this was called is written and flushed.
+	 */
+	void flush() {
+		long target = claimed.get();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MILLIS);
+		while (consumed < target && writerThread.isAlive() && System.nanoTime() < deadline) {
+			LockSupport.unpark(writerThread);
+			LockSupport.parkNanos(this, FULL_PARK_NANOS);
+		}
+	}
+
+	/**
+	 * Writes every log that's still waiting, then stops the writer thread.
+	 */
+	void shutdown() {
+		running = false;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void runWriter() {
+		StringBuilder consoleBatch = new StringBuilder();
+		StringBuilder fileBatch = new StringBuilder();
+		StringBuilder structuredBatch = new StringBuilder();
+		long next = 0;
+		long batchTime = 0;
+		while (running || next < claimed.get()) {
+			int batchSize = 0;
+			while (batchSize < MAX_BATCH_SIZE) {
+				int index = (int) (next & MASK);
+				if (published.get(index) != next) {
+					break;
+				}
+				Slot slot = slots[index];
+				batchTime = slot.time;
+				try {
+					appendSlot(slot, consoleBatch, fileBatch, structuredBatch);
+				} catch (Throwable e) {
+					// Skip just this log, so one bad log can't stop every log after it
+					System.out.println(STR."Could not write a log, got this error: '\{e}'");
+				}
+				// Don't keep the log's text alive until the slot gets reused
+				slot.info = null;
+				slot.context = null;
+				next++;
+				batchSize++;
+			}
+			if (batchSize > 0) {
+				try {
+					writeBatch(consoleBatch, fileBatch, structuredBatch, batchTime);
+				} catch (Throwable e) {
+					System.out.println(STR."Could not write \{batchSize} logs, got this error: '\{e}'");
+				} finally {
+					consoleBatch.setLength(0);
+					fileBatch.setLength(0);
+					structuredBatch.setLength(0);
+					consumed = next;
+				}
+				continue;
+			}
+			writerParked = true;
+			// Check again after saying we're parked, so a log published in between isn't missed
+			if (running && published.get((int) (next & MASK)) != next) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+			writerParked = false;
+		}
+	}
+
+	private static void appendSlot(Slot slot, StringBuilder consoleBatch, StringBuilder fileBatch, StringBuilder structuredBatch) {
+		String consoleLog = LoggerUtil.constructLog(slot.time, slot.category, slot.info, slot.type, slot.includeDots, slot.emphasis, false);
+		String fileLog = null;
+		String structuredLog = null;
+		if (slot.writeToFile) {
+			fileLog = LoggerUtil.constructLog(slot.time, slot.category, slot.info, slot.type, slot.includeDots, false, true);
+			if (LoggerUtil.isStructuredLoggingEnabled()) {
+				structuredLog = LoggerUtil.constructStructuredLog(slot.time, slot.category, slot.context, slot.info, slot.type);
+			}
+		}
+		// Only added once every part was made, so a log that fails halfway isn't half written
+		consoleBatch.append(consoleLog).append('\n');
+		if (fileLog != null) {
+			fileBatch.append(fileLog).append('\n');
+		}
+		if (structuredLog != null) {
+			structuredBatch.append(structuredLog).append('\n');
+		}
+	}
+
+	private static void writeBatch(StringBuilder consoleBatch, StringBuilder fileBatch, StringBuilder structuredBatch, long time) {
+		System.out.print(consoleBatch);
+		System.out.flush();
+		LoggerUtil.appendToFiles(fileBatch, structuredBatch, time);
+	}
+
+	/**
+	 * A single log waiting in the ring buffer.
+	 */
+	private static final class Slot {
+		private long time;
+		private LogCategory category;
+		private LogContext context;
+		private String info;
+		private LogType type;
+		private boolean includeDots;
+		private boolean emphasis;
+		private boolean writeToFile;
+	}
+}
@@ -0,0 +1,28 @@
+package net.stringfromjava.projectpiggyg.util.app;
+
+/**
+ * What part of PiggyG a log comes from, which lets the logs of each part
+ * be turned up or down on their own in the config.
+ */
+public enum LogCategory {
+	/**
+	 * Anything that doesn't fit in another category.
+	 */
+	GENERAL,
+	/**
+	 * Files and folders being created or deleted.
+	 */
+	FILES,
+	/**
+	 * Slash commands being used.
+	 */
+	COMMANDS,
+	/**
+	 * Messages and attachments being cached.
+	 */
+	CACHE,
+	/**
+	 * Guild logs (like join/leave and deleted message logs) being written or read.
+	 */
+	GUILD_LOGS
+}
@@ -0,0 +1,46 @@
+package net.stringfromjava.projectpiggyg.util.app;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Extra fields added to a log in the structured (JSON lines) log file, so logs
+ * can be filtered and measured by guild, channel and command afterward.
+ *
+ * @param guildId       The ID of the guild the log is about.
+ * @param channelId     The ID of the channel the log is about.
+ * @param command       The name of the command the log is about.
+ * @param latencyMillis How long (in milliseconds) the thing being logged took, or {@link #NO_LATENCY}.
+ */
+public record LogContext(@Nullable String guildId, @Nullable String channelId, @Nullable String command, long latencyMillis) {
+
+	/**
+	 * The latency of a log that didn't time anything.
+	 */
+	public static final long NO_LATENCY = -1;
+
+	/**
+	 * A context without any fields.
+	 */
+	public static final LogContext EMPTY = new LogContext(null, null, null, NO_LATENCY);
+
+	@NotNull
+	public LogContext withGuild(@Nullable String guildId) {
+		return new LogContext(guildId, channelId, command, latencyMillis);
+	}
+
+	@NotNull
+	public LogContext withChannel(@Nullable String channelId) {
+		return new LogContext(guildId, channelId, command, latencyMillis);
+	}
+
+	@NotNull
+	public LogContext withCommand(@Nullable String command) {
+		return new LogContext(guildId, channelId, command, latencyMillis);
+	}
+
+	@NotNull
+	public LogContext withLatency(long latencyMillis) {
+		return new LogContext(guildId, channelId, command, latencyMillis);
+	}
+}
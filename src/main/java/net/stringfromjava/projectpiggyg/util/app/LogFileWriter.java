@@ -0,0 +1,259 @@
+package net.stringfromjava.projectpiggyg.util.app;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the current log file open and splits it into segments while PiggyG is running.
+ * <p>
+ * A new segment is started once the current one gets too big or a new day starts, so no single
+ * log file grows forever (and the one that's sent along with command errors always stays small).
+ * Finished segments are compressed with gzip in the background, and the oldest segments are
+ * deleted once all of them together take up more than the configured amount of bytes. The limit
+ * is shared by every writer (they all write to the same folder), so the text and structured log
+ * files together never take up more than the limit.
+ */
+final class LogFileWriter {
+
+	// Stops a tiny limit in the config from creating a new segment for every log
+	private static final long MIN_SEGMENT_BYTES = 64 * 1024;
+	private static final Object retentionLock = new Object();
+	// Both are guarded by retentionLock, and are shared so every writer's files count toward the same limit
+	private static final Set<String> logExtensions = new HashSet<>();
+	private static final Set<Path> currentSegments = new HashSet<>();
+
+	private final Path folder;
+	private final DateTimeFormatter nameFormatter;
+	private final String extension;
+	private long maxSegmentBytes = Long.MAX_VALUE;
+	private long maxTotalBytes = Long.MAX_VALUE;
+	private Path segment;
+	private BufferedWriter writer;
+	private long segmentBytes;
+	private long nextDayMillis;
+	private String segmentTimeName;
+	private int sameSecondSegments;
+
+	/**
+	 * @param folder        The folder the log files are kept in.
+	 * @param nameFormatter The formatter used for the name of each segment, which must sort by time.
+	 * @param extension     The extension of each segment (like {@code .txt}). Only files with this
+	 *                      extension are archived by {@code this} writer, but the files of every
+	 *                      writer count toward the byte limit.
+	 * @throws IOException If the first segment couldn't be opened.
+	 */
+	LogFileWriter(Path folder, DateTimeFormatter nameFormatter, String extension) throws IOException {
+		this.folder = folder;
+		this.nameFormatter = nameFormatter;
+		this.extension = extension;
+		synchronized (retentionLock) {
+			logExtensions.add(extension);
+		}
+		openSegment(System.currentTimeMillis());
+	}
+
+	/**
+	 * Sets when a new segment is started and how many bytes the log files can take up altogether.
+	 *
+	 * @param maxSegmentBytes How big (in bytes) a segment can get before a new one is started.
+	 * @param maxTotalBytes   How many bytes every log file together can take up.
+	 */
+	synchronized void setLimits(long maxSegmentBytes, long maxTotalBytes) {
+		this.maxSegmentBytes = Math.max(maxSegmentBytes, MIN_SEGMENT_BYTES);
+		this.maxTotalBytes = maxTotalBytes;
+	}
+
+	/**
+	 * Adds logs to the current segment and flushes them, starting a new segment first if needed.
+	 *
+	 * @param logs The logs to add, each ending with a new line.
+	 * @param time When (in epoch milliseconds) the logs were logged.
+	 */
+	synchronized void append(CharSequence logs, long time) {
+		try {
+			if (segmentBytes > 0 && (segmentBytes + logs.length() > maxSegmentBytes || time >= nextDayMillis)) {
+				rotate(time);
+			}
+			writer.append(logs);
+			writer.flush();
+			// Logs are almost always ASCII, so this is close enough to the amount of bytes
+			segmentBytes += logs.length();
+		} catch (IOException e) {
+			System.out.println(STR."Could not write to the log file: '\{e.getMessage()}'");
+		}
+	}
+
+	/**
+	 * @return The segment that's being written to right now.
+	 */
+	synchronized File getSegment() {
+		return segment.toFile();
+	}
+
+	/**
+	 * Compresses every segment (other than the current one) that hasn't been compressed yet, like
+	 * the ones left behind by an earlier run, and then deletes the oldest log files that don't fit.
+	 *
+	 * @return How many log files were deleted.
+	 */
+	int archiveOldSegments() {
+		Path current = getSegment().toPath();
+		try (Stream<Path> files = Files.list(folder)) {
+			for (Path file : files.filter(file -> isSegment(file) && !file.equals(current)).toList()) {
+				compress(file);
+			}
+		} catch (IOException e) {
+			LoggerUtil.log(STR."Could not look through the log files, got this error: '\{e.getMessage()}'", LogType.WARN, false);
+		}
+		return enforceRetention();
+	}
+
+	private void rotate(long time) throws IOException {
+		Path finished = segment;
+		openSegment(time);
+		Thread.ofVirtual().name("piggyg-log-archiver").start(() -> {
+			compress(finished);
+			enforceRetention();
+		});
+	}
+
+	/**
+	 * Opens a new segment named after the given time. If more than one segment is started in the
+	 * same second, the later ones get {@code _1}, {@code _2} and so on added to their name, which
+	 * still sorts them after the first one.
+	 */
+	private void openSegment(long time) throws IOException {
+		LocalDateTime start = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+		String name = start.format(nameFormatter);
+		// The counter is kept instead of checking which names are taken, since retention
+		// might've already deleted an earlier segment from this second
+		sameSecondSegments = name.equals(segmentTimeName) ? sameSecondSegments + 1 : 0;
+		segmentTimeName = name;
+		Path next = folder.resolve(STR."\{name}\{(sameSecondSegments > 0) ? STR."_\{sameSecondSegments}" : ""}\{extension}");
+		BufferedWriter nextWriter = Files.newBufferedWriter(next, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		if (writer != null) {
+			writer.close();
+		}
+		writer = nextWriter;
+		synchronized (retentionLock) {
+			if (segment != null) {
+				currentSegments.remove(segment);
+			}
+			currentSegments.add(next);
+		}
+		segment = next;
+		segmentBytes = Files.size(next);
+		LocalDate nextDay = start.toLocalDate().plusDays(1);
+		nextDayMillis = nextDay.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	private void compress(Path file) {
+		Path archive = file.resolveSibling(STR."\{file.getFileName()}.gz");
+		Path tempArchive = archive.resolveSibling(STR."\{archive.getFileName()}.tmp");
+		synchronized (retentionLock) {
+			// It might've already been compressed by the archiving done at startup
+			if (!Files.exists(file)) {
+				return;
+			}
+			try {
+				try (InputStream in = Files.newInputStream(file);
+				     OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempArchive))) {
+					in.transferTo(out);
+				}
+				Files.move(tempArchive, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				Files.delete(file);
+			} catch (IOException e) {
+				LoggerUtil.log(STR."Could not compress log file '\{file.getFileName()}', got this error: '\{e.getMessage()}'", LogType.WARN, false);
+				try {
+					Files.deleteIfExists(tempArchive);
+				} catch (IOException ignored) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the oldest log files (of every writer) until every log file together fits in
+	 * the byte limit. The current segment of every writer is never deleted.
+	 *
+	 * @return How many log files were deleted.
+	 */
+	private int enforceRetention() {
+		long limit;
+		synchronized (this) {
+			limit = maxTotalBytes;
+		}
+		synchronized (retentionLock) {
+			List<Path> logFiles = new ArrayList<>();
+			long totalBytes = 0;
+			try (Stream<Path> files = Files.list(folder)) {
+				// Segments are named after when they started, so sorting by name sorts from oldest to newest
+				for (Path file : files.filter(LogFileWriter::isLogFile).sorted(Comparator.comparing(Path::getFileName)).toList()) {
+					totalBytes += Files.size(file);
+					logFiles.add(file);
+				}
+			} catch (IOException e) {
+				LoggerUtil.log(STR."Could not look through the log files, got this error: '\{e.getMessage()}'", LogType.WARN, false);
+				return 0;
+			}
+			int deleted = 0;
+			for (Path file : logFiles) {
+				if (totalBytes <= limit) {
+					break;
+				}
+				if (currentSegments.contains(file)) {
+					continue;
+				}
+				try {
+					long size = Files.size(file);
+					Files.delete(file);
+					totalBytes -= size;
+					deleted++;
+				} catch (IOException e) {
+					LoggerUtil.log(STR."Could not delete old log file '\{file.getFileName()}', got this error: '\{e.getMessage()}'", LogType.WARN, false);
+				}
+			}
+			return deleted;
+		}
+	}
+
+	private boolean isSegment(Path file) {
+		return file.getFileName().toString().endsWith(extension);
+	}
+
+	/**
+	 * Checks if a file belongs to any writer. This must only be called while holding {@link #retentionLock}.
+	 */
+	private static boolean isLogFile(Path file) {
+		String name = file.getFileName().toString();
+		if (!Files.isRegularFile(file)) {
+			return false;
+		}
+		for (String logExtension : logExtensions) {
+			if (name.endsWith(logExtension) || name.endsWith(STR."\{logExtension}.gz")) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
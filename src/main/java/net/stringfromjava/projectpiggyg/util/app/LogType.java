@@ -1,6 +1,11 @@
 package net.stringfromjava.projectpiggyg.util.app;
 
+/**
+ * How important a log is, from least to most important. Logs that are less
+ * important than the level set in the config are skipped.
+ */
 public enum LogType {
+	DEBUG,
 	INFO,
 	WARN,
 	ERROR
@@ -1,28 +1,167 @@
 package net.stringfromjava.projectpiggyg.util.app;
 
 import net.stringfromjava.projectpiggyg.util.Constants;
-import net.stringfromjava.projectpiggyg.util.data.FileUtil;
 import net.stringfromjava.projectpiggyg.util.data.PathUtil;
 import net.stringfromjava.projectpiggyg.util.sys.RuntimeUtil;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
 
 /**
  * Utility class for displaying logs in the console and in
  * PiggyG's {@code logs} folder.
+ * <p>
+ * Every log has a {@link LogType} (its level) and a {@link LogCategory}, and logs below the level
+ * set for their category in the config are skipped. The overloads that take a {@link Supplier}
+ * only build their message if the log isn't skipped, so they should be used for chatty logs.
  */
 public final class LoggerUtil {
 
-	private static File logFile;
+	private static final DateTimeFormatter LOG_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	private static final DateTimeFormatter FILE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH-mm-ss");
+	private static final String LOG_EXTENSION = ".txt";
+	private static final String STRUCTURED_LOG_EXTENSION = ".jsonl";
+
+	private static LogFileWriter fileWriter;
+	private static volatile LogFileWriter structuredWriter;
+	private static volatile AsyncLogWriter asyncWriter;
+	// The lowest level that's logged for each category, indexed by the category's ordinal
+	private static volatile LogType[] categoryLevels = defaultCategoryLevels(LogType.INFO);
 
 	/**
 	 * Configures the logging system.
 	 */
 	public static void configure() {
-		logFile = FileUtil.createFile(STR."\{getFormattedLogTimes()[1]}.txt", PathUtil.ofAppData("logs"), false);
+		try {
+			fileWriter = new LogFileWriter(Paths.get(PathUtil.ofAppData("logs")), FILE_TIME_FORMATTER, LOG_EXTENSION);
+		} catch (IOException e) {
+			throw new RuntimeException(STR."Could not create a log file, got this error: '\{e.getMessage()}'");
+		}
+	}
+
+	/**
+	 * Configures which logs are skipped, when the log file is split into a new segment, how much
+	 * space the log files can take up and if the structured log file is written. This needs the
+	 * config, so it's done separately from (and after) {@link #configure()}.
+	 */
+	public static void configureFromConfig() {
+		long maxFileBytes = AppUtil.getConfigLong("log_file_max_bytes", 16L * 1024 * 1024);
+		long maxTotalBytes = AppUtil.getConfigLong("logs_max_total_bytes", 256L * 1024 * 1024);
+		fileWriter.setLimits(maxFileBytes, maxTotalBytes);
+		configureLevels(AppUtil.getConfigProperty("log_level", "INFO"), AppUtil.getConfigProperty("log_category_levels", ""));
+		if (AppUtil.conditionalEnabled(Constants.Conditionals.STRUCTURED_LOGGING) && structuredWriter == null) {
+			try {
+				LogFileWriter writer = new LogFileWriter(Paths.get(PathUtil.ofAppData("logs")), FILE_TIME_FORMATTER, STRUCTURED_LOG_EXTENSION);
+				writer.setLimits(maxFileBytes, maxTotalBytes);
+				structuredWriter = writer;
+			} catch (IOException e) {
+				log(STR."Could not create the structured log file, got this error: '\{e.getMessage()}'", LogType.WARN, false);
+			}
+		}
+	}
+
+	/**
+	 * Compresses the log files of earlier sessions, and then deletes the oldest
+	 * log files until they all fit in the space set in the config.
+	 *
+	 * @return How many log files were deleted.
+	 */
+	public static int archiveOldLogFiles() {
+		int deleted = fileWriter.archiveOldSegments();
+		LogFileWriter writer = structuredWriter;
+		return (writer != null) ? deleted + writer.archiveOldSegments() : deleted;
+	}
+
+	/**
+	 * Checks if logs of a category and level would be logged, which can be used to skip
+	 * work that's only done for a log (like timing something).
+	 *
+	 * @param category The category of the log.
+	 * @param type     The level of the log.
+	 * @return If the log wouldn't be skipped.
+	 */
+	public static boolean isEnabled(@NotNull LogCategory category, @NotNull LogType type) {
+		return type.compareTo(categoryLevels[category.ordinal()]) >= 0;
+	}
+
+	/**
+	 * Logs a debug message, which is skipped unless debug logs are enabled for its category.
+	 *
+	 * @param category The category of the log.
+	 * @param info     Builds the message, which is only called if the log isn't skipped.
+	 */
+	public static void debug(@NotNull LogCategory category, @NotNull Supplier<String> info) {
+		log(category, LogType.DEBUG, LogContext.EMPTY, info);
+	}
+
+	/**
+	 * Logs info into the console and a text file that PiggyG created at startup.
+	 *
+	 * @param category The category of the log.
+	 * @param type     The type of log being displayed.
+	 * @param info     Builds the message, which is only called if the log isn't skipped.
+	 */
+	public static void log(@NotNull LogCategory category, @NotNull LogType type, @NotNull Supplier<String> info) {
+		log(category, type, LogContext.EMPTY, info);
+	}
+
+	/**
+	 * Logs info into the console and a text file that PiggyG created at startup.
+	 *
+	 * @param category The category of the log.
+	 * @param type     The type of log being displayed.
+	 * @param context  Extra fields for the structured log file, like the guild the log is about.
+	 * @param info     Builds the message, which is only called if the log isn't skipped.
+	 */
+	public static void log(@NotNull LogCategory category, @NotNull LogType type, @NotNull LogContext context, @NotNull Supplier<String> info) {
+		if (isEnabled(category, type)) {
+			write(category, context, info.get(), type, false, type == LogType.ERROR, true);
+		}
+	}
+
+	/**
+	 * Switches to asynchronous logging, where every log is handed over to a background
+	 * thread that writes it to the console and the log file. After this, logging is only
+	 * a couple of stores to memory for the thread that logs something.
+	 */
+	public static synchronized void startAsyncLogging() {
+		if (asyncWriter == null && fileWriter != null) {
+			asyncWriter = new AsyncLogWriter();
+		}
+	}
+
+	/**
+	 * Waits until every log that's been logged so far is written to the log file.
+	 * This should be called before the log file is read or sent somewhere.
+	 */
+	public static void flush() {
+		AsyncLogWriter writer = asyncWriter;
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Writes every log that's still waiting and stops asynchronous logging, if it was started.
+	 * Anything logged after this is written on the thread that logs it.
+	 */
+	public static synchronized void shutdown() {
+		AsyncLogWriter writer = asyncWriter;
+		if (writer != null) {
+			asyncWriter = null;
+			writer.shutdown();
+		}
 	}
 
 	/**
@@ -96,12 +235,9 @@ public final class LoggerUtil {
 	 * @param writeToFile Should the new log be written to the current log file?
 	 */
 	public static void log(String info, LogType type, boolean includeDots, boolean emphasis, boolean writeToFile) {
-		String fileLog = constructLog(info, type, includeDots, false, true);
-		String consoleLog = constructLog(info, type, includeDots, emphasis, false);
-		if (writeToFile) {
-			FileUtil.writeToFile(logFile, STR."\{fileLog}\n", true);
+		if (isEnabled(LogCategory.GENERAL, type)) {
+			write(LogCategory.GENERAL, LogContext.EMPTY, info, type, includeDots, emphasis, writeToFile);
 		}
-		System.out.println(consoleLog);
 	}
 
 	/**
@@ -113,40 +249,139 @@ public final class LoggerUtil {
 	 */
 	public static String[] getFormattedLogTimes() {
 		LocalDateTime now = LocalDateTime.now();
-		String logTimeDisplay = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-		String fileTimeDisplay = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH-mm-ss"));
+		String logTimeDisplay = now.format(LOG_TIME_FORMATTER);
+		String fileTimeDisplay = now.format(FILE_TIME_FORMATTER);
 		return new String[]{ logTimeDisplay, fileTimeDisplay };
 	}
 
 	/**
-	 * Gets and returns a copy of the current log file.
+	 * Gets and returns a copy of the current log file. Since the log file is split into
+	 * segments while PiggyG runs, this is only the newest segment, not the whole session.
 	 *
 	 * @return A copy of the current log file that's being used.
 	 */
 	@Nullable
 	public static File getLogFile() {
-		return logFile == null ? null : new File(logFile.getPath());
+		return fileWriter == null ? null : fileWriter.getSegment();
 	}
 
-	private static String constructLog(String info, LogType type, boolean includeDots, boolean emphasis, boolean isFileLog) {
+	/**
+	 * Adds already formatted logs to the log file and the structured log file.
+	 *
+	 * @param fileLogs       The logs for the log file.
+	 * @param structuredLogs The logs for the structured log file.
+	 * @param time           When (in epoch milliseconds) the logs were logged.
+	 */
+	static void appendToFiles(CharSequence fileLogs, CharSequence structuredLogs, long time) {
+		if (!fileLogs.isEmpty() && fileWriter != null) {
+			fileWriter.append(fileLogs, time);
+		}
+		LogFileWriter writer = structuredWriter;
+		if (!structuredLogs.isEmpty() && writer != null) {
+			writer.append(structuredLogs, time);
+		}
+	}
+
+	/**
+	 * @return If logs also need to be formatted for the structured log file.
+	 */
+	static boolean isStructuredLoggingEnabled() {
+		return structuredWriter != null;
+	}
+
+	static String constructLog(long time, LogCategory category, String info, LogType type, boolean includeDots, boolean emphasis, boolean isFileLog) {
 		StringBuilder log = new StringBuilder();
-		String[] logTimes = getFormattedLogTimes();
 		log.append(!isFileLog && RuntimeUtil.ansiCodesAllowed() ? getLogColor(type, emphasis) : "");
-		log.append(STR."\{logTimes[0]} ");
+		log.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()).format(LOG_TIME_FORMATTER)).append(' ');
 		log.append("[PIGGYG] ");
 		log.append(STR."[\{type}] ");
+		log.append((category != LogCategory.GENERAL) ? STR."[\{category}] " : "");
 		log.append(info);
 		log.append(includeDots ? "..." : "");
 		log.append(!isFileLog && RuntimeUtil.ansiCodesAllowed() ? Constants.Ansi.CONSOLE_TEXT_RESET : "");
 		return log.toString();
 	}
 
+	/**
+	 * Builds a single line of the structured log file, which is a JSON object with
+	 * the log's time, level, category, message and context.
+	 */
+	static String constructStructuredLog(long time, LogCategory category, LogContext context, String info, LogType type) {
+		StringBuilder log = new StringBuilder(info.length() + 128);
+		log.append("{\"time\":").append(time);
+		log.append(",\"level\":\"").append(type).append('"');
+		log.append(",\"category\":\"").append(category).append('"');
+		log.append(",\"message\":").append(JSONObject.quote(info));
+		if (context.guildId() != null) {
+			log.append(",\"guild\":").append(JSONObject.quote(context.guildId()));
+		}
+		if (context.channelId() != null) {
+			log.append(",\"channel\":").append(JSONObject.quote(context.channelId()));
+		}
+		if (context.command() != null) {
+			log.append(",\"command\":").append(JSONObject.quote(context.command()));
+		}
+		if (context.latencyMillis() != LogContext.NO_LATENCY) {
+			log.append(",\"latency_ms\":").append(context.latencyMillis());
+		}
+		return log.append('}').toString();
+	}
+
+	private static void write(LogCategory category, LogContext context, String info, LogType type, boolean includeDots, boolean emphasis, boolean writeToFile) {
+		long time = System.currentTimeMillis();
+		AsyncLogWriter writer = asyncWriter;
+		if (writer != null && writer.publish(time, category, context, info, type, includeDots, emphasis, writeToFile)) {
+			return;
+		}
+		if (writeToFile) {
+			String fileLog = constructLog(time, category, info, type, includeDots, false, true);
+			String structuredLog = isStructuredLoggingEnabled() ? STR."\{constructStructuredLog(time, category, context, info, type)}\n" : "";
+			appendToFiles(STR."\{fileLog}\n", structuredLog, time);
+		}
+		System.out.println(constructLog(time, category, info, type, includeDots, emphasis, false));
+	}
+
+	private static void configureLevels(String level, String overrides) {
+		LogType defaultLevel = parseLevel(level, LogType.INFO);
+		LogType[] levels = defaultCategoryLevels(defaultLevel);
+		// Each override looks like "CATEGORY:LEVEL", like "FILES:DEBUG"
+		for (String override : overrides.split(",")) {
+			String[] parts = override.strip().split(":");
+			if (parts.length != 2) {
+				continue;
+			}
+			try {
+				LogCategory category = LogCategory.valueOf(parts[0].strip().toUpperCase(Locale.ROOT));
+				levels[category.ordinal()] = parseLevel(parts[1], defaultLevel);
+			} catch (IllegalArgumentException e) {
+				log(STR."Unknown log category '\{parts[0].strip()}' in the config, ignoring it.", LogType.WARN, false);
+			}
+		}
+		categoryLevels = levels;
+	}
+
+	private static LogType parseLevel(String level, LogType defaultLevel) {
+		try {
+			return LogType.valueOf(level.strip().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			log(STR."Unknown log level '\{level.strip()}' in the config, using \{defaultLevel} instead.", LogType.WARN, false);
+			return defaultLevel;
+		}
+	}
+
+	private static LogType[] defaultCategoryLevels(LogType level) {
+		LogType[] levels = new LogType[LogCategory.values().length];
+		Arrays.fill(levels, level);
+		return levels;
+	}
+
 	private static String getLogColor(LogType type, boolean emphasis) {
 		String toReturn = Constants.Ansi.CONSOLE_TEXT_BOLD;
 		if (emphasis) {
 			toReturn += Constants.Ansi.CONSOLE_TEXT_UNDERLINE;
 		}
 		switch (type) {
+			case DEBUG -> toReturn += Constants.Ansi.CONSOLE_TEXT_CYAN;
 			case INFO -> toReturn += Constants.Ansi.CONSOLE_TEXT_PINK;
 			case WARN -> toReturn += Constants.Ansi.CONSOLE_TEXT_YELLOW;
 			case ERROR -> toReturn += Constants.Ansi.CONSOLE_TEXT_RED;
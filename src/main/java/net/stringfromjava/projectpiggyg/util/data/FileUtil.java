@@ -1,14 +1,12 @@
 package net.stringfromjava.projectpiggyg.util.data;
 
-import net.dv8tion.jda.api.entities.Message;
 import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
 import net.stringfromjava.projectpiggyg.util.app.LogType;
 import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.net.URL;
 import java.nio.file.Paths;
 
 /**
@@ -47,7 +45,7 @@ public final class FileUtil {
 		if (!newFile.exists()) {
 			try {
 				if (logInfo) {
-					LoggerUtil.log(STR."Creating new file in '\{newPath}'");
+					LoggerUtil.debug(LogCategory.FILES, () -> STR."Creating new file in '\{newPath}'");
 				}
 				newFile.createNewFile();
 			} catch (IOException e) {
@@ -76,7 +74,7 @@ public final class FileUtil {
 		File toDelete = ensureFileExists(path);
 		boolean deleted = toDelete.delete();
 		if (deleted) {
-			LoggerUtil.log(STR."Successfully deleted file in path '\{path}'.", LogType.INFO, false);
+			LoggerUtil.debug(LogCategory.FILES, () -> STR."Successfully deleted file in path '\{path}'.");
 		} else {
 			LoggerUtil.log(STR."Failed to delete file in path '\{path}'.", LogType.WARN, false);
 		}
@@ -205,53 +203,6 @@ public final class FileUtil {
 		return file;
 	}
 
-	/**
-	 * Converts a {@link net.dv8tion.jda.api.entities.Message.Attachment}
-	 * to a {@link java.io.File}.
-	 *
-	 * @param attachment The attachment to convert.
-	 * @param path       The path that the converted file will be stored in.
-	 * @return The attachment as a {@link java.io.File} object.
-	 */
-	@Nullable
-	public static File convertAttachmentToFile(Message.Attachment attachment, String path) {
-		return convertAttachmentToFile(attachment, path, true);
-	}
-
-	/**
-	 * Converts a {@link net.dv8tion.jda.api.entities.Message.Attachment}
-	 * to a {@link java.io.File}.
-	 *
-	 * @param attachment            The attachment to convert.
-	 * @param path                  The path that the converted file will be stored in.
-	 * @param logNonExistentWarning Should PiggyG log a warning when the specified path doesn't exist?
-	 * @return The attachment as a {@link java.io.File} object.
-	 */
-	@Nullable
-	public static File convertAttachmentToFile(Message.Attachment attachment, String path, boolean logNonExistentWarning) {
-		try (InputStream in = new URL(attachment.getUrl()).openStream()) {
-			// Make sure the passed path exists
-			PathUtil.ensurePathExists(path, logNonExistentWarning);
-			// Copy the data from the attachment to the file
-			File file = new File(PathUtil.constructPath(path, attachment.getFileName()));
-			try (OutputStream out = new FileOutputStream(file)) {
-				byte[] buffer = new byte[8192];
-				int len;
-				while ((len = in.read(buffer)) != -1) {
-					out.write(buffer, 0, len);
-				}
-				return file;
-			}
-		} catch (IOException e) {
-			LoggerUtil.log(
-					STR."Failed to convert an attachment to a file, got this error message: '\{e.getMessage()}'",
-					LogType.ERROR,
-					false
-			);
-			return null;
-		}
-	}
-
 	/**
 	 * Used for removing the file extension from a file's name.
 	 *
@@ -8,9 +8,8 @@ import org.jetbrains.annotations.NotNull;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.time.Clock;
-import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
 
 /**
  * Utility class for manipulating data in (specifically) JSON objects.
@@ -45,11 +44,14 @@ public final class JsonUtil {
 	 * Generates a new {@link org.json.JSONObject} of multiple
 	 * keys with info of what time it currently is. (Meant specifically
 	 * for new logs that are made for commands.)
+	 * <p>
+	 * Along with the readable fields, the {@code epoch} field holds the time in
+	 * milliseconds since the Unix epoch, so logs can be compared and sorted by time.
 	 *
 	 * @return A new {@link org.json.JSONObject} with the current time.
 	 */
 	public static JSONObject getCurrentTimeJson() {
-		LocalDateTime time = LocalDateTime.now();
+		ZonedDateTime time = ZonedDateTime.now();
 		return new JSONObject()
 				.put("year", Integer.toString(time.getYear()))
 				.put("month", Integer.toString(time.getMonthValue()))
@@ -57,7 +59,8 @@ public final class JsonUtil {
 				.put("hour", Integer.toString(time.getHour()))
 				.put("minute", Integer.toString(time.getMinute()))
 				.put("second", Integer.toString(time.getSecond()))
-				.put("tz", Clock.systemDefaultZone().getZone());  // tz = time zone
+				.put("tz", time.getZone())  // tz = time zone
+				.put("epoch", time.toInstant().toEpochMilli());
 	}
 
 	/**
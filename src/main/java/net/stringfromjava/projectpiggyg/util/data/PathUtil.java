@@ -1,6 +1,7 @@
 package net.stringfromjava.projectpiggyg.util.data;
 
 import net.stringfromjava.projectpiggyg.util.Constants;
+import net.stringfromjava.projectpiggyg.util.app.LogCategory;
 import net.stringfromjava.projectpiggyg.util.app.LogType;
 import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
 import net.stringfromjava.projectpiggyg.util.sys.PlatformType;
@@ -39,7 +40,7 @@ public final class PathUtil {
 		try {
 			if (!Files.exists(dirPath)) {
 				if (logInfo) {
-					LoggerUtil.log(STR."Creating new directory '\{path}'");
+					LoggerUtil.debug(LogCategory.FILES, () -> STR."Creating new directory '\{path}'");
 				}
 				Files.createDirectories(dirPath);
 			}
@@ -145,6 +146,18 @@ public final class PathUtil {
 		return constructPath(BataUtil.combineArrays(base, toAppend));
 	}
 
+	/**
+	 * Gets a path to a folder or file inside the shared attachment {@code blobs} folder.
+	 *
+	 * @param toAppend Any other folder to add on to the path.
+	 * @return The path to the {@code blobs} folder (with the extra folders for
+	 * the path provided).
+	 */
+	public static String fromAttachmentBlobs(String... toAppend) {
+		String[] base = {Constants.System.APP_DATA_DIRECTORY, Constants.System.ATTACHMENT_BLOBS_FOLDER_NAME};
+		return constructPath(BataUtil.combineArrays(base, toAppend));
+	}
+
 	/**
 	 * Gets the full pathway to the app data folder for the current user.
 	 *
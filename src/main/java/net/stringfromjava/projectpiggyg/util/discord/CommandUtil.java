@@ -38,12 +38,16 @@ public final class CommandUtil {
 		List<CommandOptionData> options = (List<CommandOptionData>) commandListener.getOptions();
 		CommandData command = Commands.slash(commandListener.getName(), commandListener.getDescription())
 				.addOptions(options.stream()
-						.map(option -> new OptionData(
-								option.optionType(),
-								option.name(),
-								option.description(),
-								option.required()
-						))
+						.map(option -> {
+							OptionData optionData = new OptionData(
+									option.optionType(),
+									option.name(),
+									option.description(),
+									option.required()
+							);
+							option.choices().forEach(choice -> optionData.addChoice(choice, choice));
+							return optionData;
+						})
 						.toList())
 				.setDefaultPermissions(commandListener.getMemberPermissions());
 		jda.addEventListener(commandListener);
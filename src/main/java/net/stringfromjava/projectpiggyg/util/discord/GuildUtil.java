@@ -2,9 +2,14 @@ package net.stringfromjava.projectpiggyg.util.discord;
 
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.MessageHistory;
-import net.dv8tion.jda.api.entities.channel.middleman.GuildChannel;
 import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.stringfromjava.projectpiggyg.data.cache.AttachmentBlobStore;
+import net.stringfromjava.projectpiggyg.data.cache.AttachmentDownloadService;
+import net.stringfromjava.projectpiggyg.data.cache.BackfillScheduler;
+import net.stringfromjava.projectpiggyg.data.cache.MessageHistoryIterator;
+import net.stringfromjava.projectpiggyg.data.cache.MessageSegmentStore;
+import net.stringfromjava.projectpiggyg.data.log.GuildLogType;
+import net.stringfromjava.projectpiggyg.data.log.GuildWriteAheadLog;
 import net.stringfromjava.projectpiggyg.util.Constants;
 import net.stringfromjava.projectpiggyg.util.app.AppUtil;
 import net.stringfromjava.projectpiggyg.util.app.LoggerUtil;
@@ -16,8 +21,9 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Utility class for handling components specific to
@@ -51,17 +57,12 @@ public final class GuildUtil {
 
 		// Create files
 		File configFile = FileUtil.createFile(Constants.System.GUILD_CONFIG_FILE_NAME, newGuildPath);
-		File trollLogsFile = FileUtil.createFile(Constants.System.TROLL_LOG_FILE_NAME, newLogPath);
-		File voiceLogsFile = FileUtil.createFile(Constants.System.VOICE_JOINS_LEAVES_LOG_FILE_NAME, newLogPath);
-		File voiceActionLogsFile = FileUtil.createFile(Constants.System.VOICE_ACTION_LOG_FILE_NAME, newLogPath);
-		File deletedMessageLogsFile = FileUtil.createFile(Constants.System.DELETED_MESSAGE_LOG_FILE_NAME, newLogPath);
+		for (GuildLogType type : GuildLogType.values()) {
+			FileUtil.createFile(type.getFileName(), newLogPath);
+		}
 
 		// Write to files with default content
 		FileUtil.writeToFile(configFile, generateDefaultConfigJson());
-		FileUtil.writeToFile(trollLogsFile, "[]");
-		FileUtil.writeToFile(voiceLogsFile, "[]");
-		FileUtil.writeToFile(voiceActionLogsFile, "[]");
-		FileUtil.writeToFile(deletedMessageLogsFile, "[]");
 
 		if (cacheMessages) {
 			cacheGuildMessages(guild);
@@ -69,83 +70,125 @@ public final class GuildUtil {
 	}
 
 	/**
-	 * Gets a {@link net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel}'s
-	 * full message history. Due to Discord only allowing 100 messages to be collected at a time,
-	 * this function gets a channel's history in batches of 100.
+	 * Streams a {@link net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel}'s
+	 * full message history, from the newest message to the oldest. Due to Discord only allowing
+	 * 100 messages to be collected at a time, the history is requested in pages of 100, and each
+	 * page is only requested once the stream gets to it. This means only one page is ever in memory,
+	 * and a stream that's stopped early (such as with {@code limit()}) never requests the rest.
 	 *
 	 * @param channel The {@link net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel} to
 	 *                get the message history from.
-	 * @return The entire message history stored in a {@link java.util.List}.
+	 * @return A lazy {@link java.util.stream.Stream} of the channel's entire message history.
 	 */
 	@NotNull
-	public static List<Message> getFullMessageHistory(@NotNull GuildMessageChannel channel) {
-		List<Message> messages = new ArrayList<>();
-		MessageHistory history = channel.getHistory();
-		Message lastMessage = null;
-
-		while (true) {
-			List<Message> batch;
-			if (lastMessage == null) {
-				batch = history.retrievePast(100).complete();
-			} else {
-				batch = history.getHistoryAfter(channel, lastMessage.getId()).complete().getRetrievedHistory();
-			}
-			if (batch.isEmpty()) break;
-			messages.addAll(batch);
-			lastMessage = batch.get(batch.size() - 1);
-			if (batch.size() < 100) break;
-		}
-		return messages;
+	public static Stream<Message> streamMessageHistory(@NotNull GuildMessageChannel channel) {
+		return MessageHistoryIterator.fromNewest(channel).stream();
 	}
 
-	public static void cacheGuildMessages(Guild guild) {
-		cacheGuildMessages(guild, true);
+	public static CompletableFuture<Void> cacheGuildMessages(Guild guild) {
+		return cacheGuildMessages(guild, true);
 	}
 
-	public static void cacheGuildMessages(Guild guild, boolean logInfo) {
-		if (logInfo) {
-			LoggerUtil.log(STR."Caching messages for guild '\{guild.getName()}' (ID = \{guild.getId()})");
-			boolean msgLoggingAllowed = AppUtil.conditionalEnabled("MESSAGE_LOGGING_ALLOWED");
-			if (!msgLoggingAllowed) {
+	/**
+	 * Starts caching every message in a guild that hasn't been cached yet.
+	 * The channels are cached in the background by the {@link BackfillScheduler}.
+	 *
+	 * @param guild   The guild to cache the messages of.
+	 * @param logInfo Should the progress be logged?
+	 * @return A {@link java.util.concurrent.CompletableFuture} that completes once every channel is cached.
+	 */
+	public static CompletableFuture<Void> cacheGuildMessages(Guild guild, boolean logInfo) {
+		boolean msgLoggingAllowed = AppUtil.conditionalEnabled("MESSAGE_LOGGING_ALLOWED");
+		if (!msgLoggingAllowed) {
+			if (logInfo) {
 				LoggerUtil.log(STR."Message logging is disabled! Skipping message caching");
-				return;
 			}
+			return CompletableFuture.completedFuture(null);
 		}
 
 		PathUtil.ensurePathExists(
 				PathUtil.fromGuildBlobCache(guild.getId())
 		);
+		return BackfillScheduler.schedule(guild, logInfo);
+	}
+
+	/**
+	 * Caches a message (and its attachments) that was sent on a guild, so it
+	 * can be pulled back up later if it gets edited or deleted.
+	 * <p>
+	 * The message is cached right away, but its attachments are downloaded in the
+	 * background by the {@link AttachmentDownloadService} and added to the cached
+	 * message once they're done.
+	 *
+	 * @param message The message to cache.
+	 * @return A {@link java.util.concurrent.CompletableFuture} that completes once every attachment is stored.
+	 */
+	@NotNull
+	public static CompletableFuture<Void> cacheMessage(@NotNull Message message) {
+		MessageSegmentStore store = MessageSegmentStore.of(message.getGuild().getId(), message.getChannel().getId());
+		JSONObject messageJson = JsonUtil.createMessageJson(message);
+		messageJson.getJSONObject("message").put("attachment-blobs", new JSONArray());
+		store.put(message.getIdLong(), messageJson);
+
+		List<Message.Attachment> attachments = message.getAttachments();
+		if (attachments.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
 
-		// Loop through all channels and store their messages
-		for (GuildChannel channel : guild.getChannels()) {
-			if (!(channel instanceof GuildMessageChannel messageChannel)) {
-				continue;
+		// Download the attachments in the background, the message
+		// only keeps the hash of each one once they're stored
+		List<CompletableFuture<String>> downloads = attachments.stream()
+				.map(AttachmentDownloadService.get()::downloadAttachment)
+				.toList();
+		return CompletableFuture.allOf(downloads.toArray(CompletableFuture[]::new)).thenRun(() -> {
+			JSONArray attachmentBlobs = new JSONArray();
+			for (int i = 0; i < attachments.size(); i++) {
+				String hash = downloads.get(i).join();
+				if (hash != null) {
+					attachmentBlobs.put(new JSONObject()
+							.put("name", attachments.get(i).getFileName())
+							.put("sha256", hash));
+				}
+			}
+			if (attachmentBlobs.isEmpty()) {
+				return;
 			}
-			String channelPath = PathUtil.ensurePathExists(
-					PathUtil.fromGuildBlobCache(
-							guild.getId(),
-							Constants.System.GUILD_BLOB_CACHE_CHANNELS_FOLDER_NAME,
-							messageChannel.getId()
-					),
-					false
+			boolean updated = store.update(
+					message.getIdLong(),
+					record -> {
+						record.getJSONObject("message").put("attachment-blobs", attachmentBlobs);
+						return true;
+					}
 			);
-			// Loop through the message history of the current channel
-			for (Message message : GuildUtil.getFullMessageHistory(messageChannel)) {
-				String messagePath = PathUtil.ensurePathExists(
-						PathUtil.constructPath(channelPath, Constants.System.GUILD_BLOB_CACHE_MESSAGES_FOLDER_NAME, message.getId()),
-						false
-				);
-				// Create the .json file for the basic data of the message
-				FileUtil.ensureFileExists(
-						PathUtil.constructPath(messagePath, "message.json"),
-						JsonUtil.createMessageJson(message).toString(2),
-						false
-				);
-				// Store all the attachments that are contained in a message
-				for (Message.Attachment attachment : message.getAttachments()) {
-					FileUtil.convertAttachmentToFile(attachment, messagePath, false);
-				}
+			// The message might've been evicted while its attachments were downloading
+			if (!updated) {
+				AttachmentBlobStore.releaseBlobs(attachmentBlobs);
 			}
+		});
+	}
+
+	/**
+	 * Removes every reference a guild's cached messages, deleted messages and trolls hold on
+	 * attachment blobs. This should be called right before the guild's folder is deleted.
+	 *
+	 * @param guildId The ID of the guild.
+	 */
+	public static void releaseAttachmentBlobs(String guildId) {
+		for (GuildLogType type : GuildLogType.values()) {
+			try (Stream<JSONObject> logs = GuildWriteAheadLog.of(guildId).stream(type)) {
+				logs.forEach(type::releaseAttachmentBlobs);
+			}
+		}
+
+		File[] channelFolders = new File(PathUtil.fromGuildBlobCache(
+				guildId,
+				Constants.System.GUILD_BLOB_CACHE_CHANNELS_FOLDER_NAME
+		)).listFiles(File::isDirectory);
+		if (channelFolders == null) {
+			return;
+		}
+		for (File channelFolder : channelFolders) {
+			MessageSegmentStore.of(guildId, channelFolder.getName()).forEachRecord(AttachmentBlobStore::releaseMessageBlobs);
 		}
 	}
 